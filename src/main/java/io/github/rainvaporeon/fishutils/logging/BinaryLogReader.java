@@ -0,0 +1,111 @@
+package io.github.rainvaporeon.fishutils.logging;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decodes the segments written by a {@link BinaryLogSink} back into text.
+ * <p></p>
+ * Records are decoded into lines such as {@code [2024-01-01 12:00:00] [name] INFO: message},
+ * as in text log files. Records that were still being written are skipped,
+ * so that segments in use, or left behind by a crash, can be decoded as well.
+ * Zeroed parts of a segment, such as pages the operating system lost in a
+ * crash, are skipped as well, up to the next record.
+ * @since 1.2.19
+ */
+public final class BinaryLogReader {
+
+    private static final Logger.Severity[] SEVERITIES = Logger.Severity.values();
+
+    private static final DateTimeFormatter FORMAT = TimestampCache.DEFAULT_FORMAT.withZone(ZoneId.systemDefault());
+
+    private BinaryLogReader() {}
+
+    /**
+     * Decodes every segment of a name, in the order they were written
+     * @param directory the directory of the segments
+     * @param name the name of the segments
+     * @param out where to append the lines
+     * @throws IOException if a segment cannot be read, or if appending fails
+     */
+    public static void decode(Path directory, String name, Appendable out) throws IOException {
+        for(Path segment : BinaryLogSink.segments(directory, name)) {
+            decode(segment, out);
+        }
+    }
+
+    /**
+     * Decodes a segment
+     * @param segment the segment
+     * @param out where to append the lines
+     * @throws IOException if the segment cannot be read or is not a segment, or if appending fails
+     */
+    public static void decode(Path segment, Appendable out) throws IOException {
+        MappedByteBuffer buffer;
+        try(FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        int limit = buffer.capacity();
+        if(limit < BinaryLogSink.FILE_HEADER || buffer.getInt(0) != BinaryLogSink.MAGIC) throw new IOException("not a log segment: " + segment);
+        if(buffer.getInt(4) != BinaryLogSink.VERSION) throw new IOException("unsupported log segment version " + buffer.getInt(4) + ": " + segment);
+
+        Map<Integer, String> names = new HashMap<>();
+        StringBuilder line = new StringBuilder();
+        int pos = BinaryLogSink.FILE_HEADER;
+        while(pos <= limit - BinaryLogSink.RECORD_HEADER) {
+            int type = (int) BinaryLogSink.INT.getAcquire(buffer, pos + 4);
+            int length = buffer.getInt(pos);
+            if(length == 0) {
+                // never written, up to the next record if there is one
+                pos += 4;
+                continue;
+            }
+            // the rest of the segment is damaged
+            if(!isRecord(type, length, limit - pos)) break;
+            if(type == BinaryLogSink.TYPE_NAME) {
+                int id = buffer.getInt(pos + BinaryLogSink.RECORD_HEADER);
+                names.put(id, string(buffer, pos + BinaryLogSink.NAME_HEADER, pos + length));
+            } else if(type == BinaryLogSink.TYPE_LOG) {
+                long millis = buffer.getLong(pos + BinaryLogSink.RECORD_HEADER);
+                int severity = buffer.get(pos + BinaryLogSink.RECORD_HEADER + 8);
+                int id = buffer.getInt(pos + BinaryLogSink.RECORD_HEADER + 9);
+                String name = names.get(id);
+                line.setLength(0);
+                line.append('[').append(FORMAT.format(Instant.ofEpochMilli(millis))).append("] [")
+                        .append(name == null ? "#" + id : name).append("] ")
+                        .append(severity >= 0 && severity < SEVERITIES.length ? SEVERITIES[severity].name() : "#" + severity).append(": ")
+                        .append(string(buffer, pos + BinaryLogSink.LOG_HEADER, pos + length)).append('\n');
+                out.append(line);
+            }
+            pos += BinaryLogSink.align(length);
+        }
+    }
+
+    // whether a header is that of a record, type 0 being one still being written
+    private static boolean isRecord(int type, int length, int remaining) {
+        if(length < BinaryLogSink.RECORD_HEADER || BinaryLogSink.align(length) > remaining) return false;
+        return switch(type) {
+            case 0 -> true;
+            case BinaryLogSink.TYPE_LOG -> length >= BinaryLogSink.LOG_HEADER;
+            case BinaryLogSink.TYPE_NAME -> length >= BinaryLogSink.NAME_HEADER;
+            default -> false;
+        };
+    }
+
+    private static String string(MappedByteBuffer buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
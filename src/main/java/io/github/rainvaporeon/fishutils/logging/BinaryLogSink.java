@@ -0,0 +1,342 @@
+package io.github.rainvaporeon.fishutils.logging;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Appends compact binary log records to preallocated, memory-mapped segment files.
+ * <p></p>
+ * Writing a record reserves its space by compare-and-set of its length and copies
+ * it into the mapped segment, without a system call or a lock, which makes
+ * logging at high volume, such as leaving {@code DEBUG} on, cheap. Records are
+ * in the page cache once written, so they survive the process crashing, and
+ * are written to the disk by the operating system or by {@link #flush()}.
+ * <p></p>
+ * Each record holds its timestamp, the ordinal of its severity, the id of the
+ * name of its logger, and its message as UTF-8. The names are written to each
+ * segment as well, so that every segment can be decoded on its own by the
+ * {@link BinaryLogReader}. Segments are named {@code <name>-000001.flog},
+ * numbered in the order they were written.
+ * <p></p>
+ * Messages longer than a quarter of the segment size are truncated. If a
+ * segment cannot be created, the sink stops writing.
+ * @see Logger#setBinarySink(BinaryLogSink)
+ * @since 1.2.19
+ */
+public final class BinaryLogSink implements Closeable {
+
+    /**
+     * The default size of each segment, 64 MiB
+     */
+    public static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+
+    private static final long MIN_SEGMENT_SIZE = 64 * 1024;
+    private static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+    // The format, shared with the reader
+
+    static final int MAGIC = 0x464C4F47; // FLOG
+    static final int VERSION = 1;
+    static final int FILE_HEADER = 8;
+    static final String EXTENSION = ".flog";
+
+    /**
+     * Records are {@code int length, int type}, followed by their content and padded
+     * to a multiple of 4 bytes, not counted in the length; the length is written when
+     * the record is reserved and the type last, so that records being written are of
+     * type 0 and can be skipped
+     */
+    static final int RECORD_HEADER = 8;
+    static final int TYPE_LOG = 1;
+    static final int TYPE_NAME = 2;
+
+    /**
+     * {@code long timestamp, byte severity, int name id}, followed by the message
+     */
+    static final int LOG_HEADER = RECORD_HEADER + 13;
+
+    /**
+     * {@code int name id}, followed by the name
+     */
+    static final int NAME_HEADER = RECORD_HEADER + 4;
+
+    static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final Path directory;
+    private final String name;
+    private final int segmentSize;
+
+    /**
+     * The names written so far, by id; guarded by this
+     */
+    private final List<byte[]> names = new ArrayList<>();
+    private final Map<String, Integer> nameIds = new ConcurrentHashMap<>();
+
+    private volatile Segment segment;
+    private int segmentIndex;
+
+    private BinaryLogSink(Path directory, String name, int segmentSize) {
+        this.directory = directory;
+        this.name = name;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Opens a sink with segments of {@link #DEFAULT_SEGMENT_SIZE}, continuing
+     * after the segments of the same name already in the directory
+     * @param directory the directory of the segments
+     * @param name the name of the segments
+     * @return the sink
+     * @throws IOException if the first segment cannot be created
+     */
+    public static BinaryLogSink open(Path directory, String name) throws IOException {
+        return open(directory, name, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens a sink, continuing after the segments of the same name already in the directory
+     * @param directory the directory of the segments
+     * @param name the name of the segments
+     * @param segmentSize the size of each segment, from 64 KiB to 1 GiB
+     * @return the sink
+     * @throws IOException if the first segment cannot be created
+     */
+    public static BinaryLogSink open(Path directory, String name, long segmentSize) throws IOException {
+        if(segmentSize < MIN_SEGMENT_SIZE || segmentSize > MAX_SEGMENT_SIZE) throw new IllegalArgumentException("segment size out of range: " + segmentSize);
+        Files.createDirectories(directory);
+        BinaryLogSink sink = new BinaryLogSink(directory, name, (int) segmentSize);
+        synchronized (sink) {
+            sink.segmentIndex = lastSegmentIndex(directory, name);
+            sink.segment = sink.newSegment();
+        }
+        return sink;
+    }
+
+    /**
+     * Gets the segments of a name in a directory, in the order they were written
+     * @param directory the directory of the segments
+     * @param name the name of the segments
+     * @return the paths of the segments
+     * @throws IOException if the directory cannot be listed
+     */
+    public static List<Path> segments(Path directory, String name) throws IOException {
+        List<Path> ret = new ArrayList<>();
+        // filtered by hand, as the name may contain characters special to globs
+        try(DirectoryStream<Path> stream = Files.newDirectoryStream(directory, path -> segmentIndex(path, name) >= 0)) {
+            stream.forEach(ret::add);
+        }
+        // zero-padded, so that they sort by index
+        ret.sort(null);
+        return ret;
+    }
+
+    /**
+     * Gets the id of a logger name, writing the name to the current segment the first time
+     * @param loggerName the name
+     * @return the id
+     */
+    int nameId(String loggerName) {
+        Integer id = nameIds.get(loggerName);
+        if(id != null) return id;
+        synchronized (this) {
+            id = nameIds.get(loggerName);
+            if(id != null) return id;
+            byte[] bytes = loggerName.getBytes(StandardCharsets.UTF_8);
+            int ret = names.size();
+            names.add(bytes);
+            Segment segment = this.segment;
+            // written before the id is used, so that it precedes the records using it,
+            // a new segment starts with every name instead
+            if(segment != null && !writeName(segment, ret, bytes)) roll(segment);
+            nameIds.put(loggerName, ret);
+            return ret;
+        }
+    }
+
+    /**
+     * Appends a log record, the message being the bytes up to the end of
+     * the message, followed by the stack trace if there is one
+     * @param severity the severity
+     * @param nameId the id of the name of the logger
+     * @param bytes the encoded message and stack trace
+     * @param messageEnd the end of the message, which starts at 0
+     * @param traceStart the start of the stack trace
+     * @param traceEnd the end of the stack trace, the same as its start if there is none
+     */
+    void write(Logger.Severity severity, int nameId, byte[] bytes, int messageEnd, int traceStart, int traceEnd) {
+        int maxMessage = segmentSize / 4;
+        int messageLength = truncate(bytes, 0, messageEnd, maxMessage);
+        // the trace follows on the next line
+        int traceLength = truncate(bytes, traceStart, traceEnd, maxMessage - messageLength - 1);
+        boolean trace = traceLength > 0;
+        int length = LOG_HEADER + messageLength + (trace ? 1 + traceLength : 0);
+        long millis = System.currentTimeMillis();
+        while(true) {
+            Segment segment = this.segment;
+            if(segment == null) return;
+            int pos = segment.reserve(length);
+            if(pos < 0) {
+                roll(segment);
+                continue;
+            }
+            MappedByteBuffer buffer = segment.buffer;
+            buffer.putLong(pos + RECORD_HEADER, millis);
+            buffer.put(pos + RECORD_HEADER + 8, (byte) severity.ordinal());
+            buffer.putInt(pos + RECORD_HEADER + 9, nameId);
+            buffer.put(pos + LOG_HEADER, bytes, 0, messageLength);
+            if(trace) {
+                buffer.put(pos + LOG_HEADER + messageLength, (byte) '\n');
+                buffer.put(pos + LOG_HEADER + messageLength + 1, bytes, traceStart, traceLength);
+            }
+            INT.setRelease(buffer, pos + 4, TYPE_LOG);
+            return;
+        }
+    }
+
+    /**
+     * Writes every record written so far to the disk
+     */
+    public void flush() {
+        Segment segment = this.segment;
+        if(segment != null) segment.buffer.force();
+    }
+
+    /**
+     * Writes every record to the disk, records written later on are discarded
+     */
+    @Override
+    public synchronized void close() {
+        Segment segment = this.segment;
+        if(segment == null) return;
+        this.segment = null;
+        segment.buffer.force();
+    }
+
+    // returns false if the segment is full
+    private boolean writeName(Segment segment, int id, byte[] bytes) {
+        int length = NAME_HEADER + bytes.length;
+        int pos = segment.reserve(length);
+        if(pos < 0) return false;
+        MappedByteBuffer buffer = segment.buffer;
+        buffer.putInt(pos + RECORD_HEADER, id);
+        buffer.put(pos + NAME_HEADER, bytes);
+        INT.setRelease(buffer, pos + 4, TYPE_NAME);
+        return true;
+    }
+
+    /**
+     * Starts the next segment, unless another thread already did
+     * @param full the full segment
+     */
+    private synchronized void roll(Segment full) {
+        if(segment != full) return;
+        try {
+            segment = newSegment();
+        } catch (IOException e) {
+            // stops writing, rather than trying again for every record
+            segment = null;
+            System.err.println("Cannot create log segment in " + directory + ", no longer writing " + name + ": ");
+            e.printStackTrace(System.err);
+        }
+    }
+
+    // called while holding this
+    private Segment newSegment() throws IOException {
+        Path path = directory.resolve(String.format("%s-%06d%s", name, ++segmentIndex, EXTENSION));
+        MappedByteBuffer buffer;
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        Segment ret = new Segment(buffer);
+        for(int id = 0; id < names.size(); id++) {
+            if(!writeName(ret, id, names.get(id))) break;
+        }
+        return ret;
+    }
+
+    private static int lastSegmentIndex(Path directory, String name) throws IOException {
+        List<Path> segments = segments(directory, name);
+        return segments.isEmpty() ? 0 : segmentIndex(segments.get(segments.size() - 1), name);
+    }
+
+    // the index of a segment, or -1 if the path is not a segment of the name
+    private static int segmentIndex(Path path, String name) {
+        String file = path.getFileName().toString();
+        if(file.length() != name.length() + 7 + EXTENSION.length() || !file.startsWith(name)
+                || file.charAt(name.length()) != '-' || !file.endsWith(EXTENSION)) return -1;
+        int ret = 0;
+        for(int i = name.length() + 1; i < name.length() + 7; i++) {
+            char c = file.charAt(i);
+            if(c < '0' || c > '9') return -1;
+            ret = ret * 10 + (c - '0');
+        }
+        return ret;
+    }
+
+    /**
+     * Gets the length of UTF-8 text cut to at most the given length, without splitting a character
+     * @return the length, 0 if at most 0 bytes fit
+     */
+    private static int truncate(byte[] bytes, int from, int to, int max) {
+        if(max <= 0) return 0;
+        if(to - from <= max) return to - from;
+        int ret = max;
+        // backs off from continuation bytes to the start of the character
+        while(ret > 0 && (bytes[from + ret] & 0xC0) == 0x80) ret--;
+        return ret;
+    }
+
+    static int align(int length) {
+        return (length + 3) & ~3;
+    }
+
+    private static final class Segment {
+        private final MappedByteBuffer buffer;
+        /**
+         * The end of the records reserved so far, which may lag behind the last one
+         */
+        private final AtomicInteger position = new AtomicInteger(FILE_HEADER);
+
+        private Segment(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * Reserves space for a record by writing its length at the end of the
+         * segment, so that a record never written in full can still be skipped
+         * @param length the length of the record, without padding
+         * @return the position of the record, or -1 if the segment is full
+         */
+        private int reserve(int length) {
+            int aligned = align(length);
+            while(true) {
+                int pos = position.get();
+                if(pos > buffer.capacity() - aligned) return -1;
+                if(INT.compareAndSet(buffer, pos, 0, length)) {
+                    position.compareAndSet(pos, pos + aligned);
+                    return pos;
+                }
+                // reserved by another thread, which may not have moved the position past it yet
+                position.compareAndSet(pos, pos + align((int) INT.getVolatile(buffer, pos)));
+            }
+        }
+    }
+}
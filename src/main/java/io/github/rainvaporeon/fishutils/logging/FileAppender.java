@@ -0,0 +1,319 @@
+package io.github.rainvaporeon.fishutils.logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Appends encoded log records to a file on a background thread.
+ * <p></p>
+ * Loggers copy their records into a shared direct buffer and return
+ * immediately, while the writer thread swaps it for a spare one and writes
+ * it through a single channel that stays open, once the buffer is full, the
+ * flush interval elapsed, or an urgent record was appended. Nothing is
+ * allocated per record, except for copies of records too large for the
+ * buffers, and loggers only wait for the writer if both buffers are full.
+ * <p></p>
+ * Records are written in the order they were appended. Once closed, the
+ * appender writes everything still buffered, and records appended later
+ * on are written synchronously.
+ * <p></p>
+ * The file is rolled over by the writer as well, according to its
+ * {@link RollingPolicy}, so that logging never waits for a rollover.
+ * @since 1.2.19
+ */
+final class FileAppender {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final AtomicInteger appenderCount = new AtomicInteger();
+
+    /**
+     * The time records may stay buffered, shared by all appenders
+     */
+    static volatile long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final File file;
+    private final Thread writer;
+
+    /**
+     * Guards the buffers, held only while copying a record
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition swapped = lock.newCondition();
+    private ByteBuffer active = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private ByteBuffer spare = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private List<CompletableFuture<Void>> flushes = new ArrayList<>();
+    /**
+     * A record too large for the buffers, written after the active buffer
+     */
+    private byte[] oversized;
+    private boolean full;
+    private boolean terminated;
+
+    /**
+     * Guards the channel and the rollover state, held while writing
+     */
+    private final Object channelLock = new Object();
+    private FileChannel channel;
+    private RollingPolicy appliedPolicy;
+    private long size;
+    private long nextRollover = Long.MAX_VALUE;
+
+    private volatile boolean urgent;
+    private volatile boolean closed;
+
+    private volatile RollingPolicy policy;
+    private volatile LogFormat format = LogFormat.TEXT;
+
+    FileAppender(File file) throws IOException {
+        this.file = file;
+        File parent = file.getAbsoluteFile().getParentFile();
+        if(parent != null) Files.createDirectories(parent.toPath());
+        this.channel = open();
+        this.size = channel.size();
+        this.writer = Thread.ofPlatform().daemon().name("Logger-writer-" + appenderCount.getAndIncrement()).unstarted(this::run);
+        this.writer.start();
+    }
+
+    /**
+     * Appends an encoded record to the file, the bytes are copied before returning
+     * @param bytes the bytes
+     * @param offset the offset of the record
+     * @param length the length of the record
+     * @param urgent whether to write the record as soon as possible, rather
+     *               than waiting for the buffer to fill or the interval to elapse
+     */
+    void append(byte[] bytes, int offset, int length, boolean urgent) {
+        lock.lock();
+        try {
+            if(oversized != null || length > active.remaining()) awaitRoom(length);
+            if(terminated) {
+                appendDirectly(bytes, offset, length);
+                return;
+            }
+            if(length > active.capacity()) {
+                // too large to ever be buffered, handed to the writer as a copy,
+                // which writes it after the buffered records
+                oversized = Arrays.copyOfRange(bytes, offset, offset + length);
+                full = true;
+                LockSupport.unpark(writer);
+                return;
+            }
+            active.put(bytes, offset, length);
+        } finally {
+            lock.unlock();
+        }
+        if(urgent) {
+            this.urgent = true;
+            LockSupport.unpark(writer);
+        }
+    }
+
+    // waits until the active buffer has room for the record and no oversized
+    // record is pending, or the writer terminated
+    private void awaitRoom(int length) {
+        while(!terminated && (oversized != null || (length <= active.capacity() && length > active.remaining()))) {
+            full = true;
+            LockSupport.unpark(writer);
+            swapped.awaitUninterruptibly();
+        }
+    }
+
+    /**
+     * Sets when the file is rolled over, the policy applies from the next write on
+     * @param policy the policy, or null to never roll over
+     */
+    void setPolicy(RollingPolicy policy) {
+        this.policy = policy;
+    }
+
+    LogFormat getFormat() {
+        return format;
+    }
+
+    void setFormat(LogFormat format) {
+        this.format = format;
+    }
+
+    /**
+     * Writes everything appended so far to the file
+     * @return a future that completes once written
+     */
+    CompletableFuture<Void> flush() {
+        CompletableFuture<Void> ret = new CompletableFuture<>();
+        lock.lock();
+        try {
+            if(terminated) {
+                ret.complete(null);
+                return ret;
+            }
+            flushes.add(ret);
+        } finally {
+            lock.unlock();
+        }
+        LockSupport.unpark(writer);
+        return ret;
+    }
+
+    /**
+     * Writes everything still buffered and closes the file, waiting for the writer
+     * @param timeout the maximum time to wait, in milliseconds
+     */
+    void close(long timeout) {
+        if(closed) return;
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        long lastWrite = System.nanoTime();
+        while(true) {
+            boolean force = urgent;
+            if(force) urgent = false;
+            boolean closing = closed;
+            long now = System.nanoTime();
+            ByteBuffer taken = null;
+            byte[] large = null;
+            List<CompletableFuture<Void>> flushed = null;
+            boolean pending;
+            lock.lock();
+            try {
+                boolean due = force || closing || full || !flushes.isEmpty() || now - lastWrite >= flushIntervalNanos;
+                if(due && active.position() > 0) {
+                    taken = active;
+                    active = spare;
+                    spare = null;
+                    full = false;
+                    swapped.signalAll();
+                }
+                if(oversized != null) {
+                    large = oversized;
+                    oversized = null;
+                    full = false;
+                    swapped.signalAll();
+                }
+                if(!flushes.isEmpty()) {
+                    flushed = flushes;
+                    flushes = new ArrayList<>();
+                }
+                // appends after this point are written directly
+                if(closing) {
+                    terminated = true;
+                    swapped.signalAll();
+                }
+                pending = active.position() > 0;
+            } finally {
+                lock.unlock();
+            }
+            if(taken != null || large != null) {
+                synchronized (channelLock) {
+                    if(taken != null) {
+                        taken.flip();
+                        write(taken);
+                    }
+                    if(large != null) write(ByteBuffer.wrap(large));
+                }
+                lastWrite = now;
+            }
+            if(taken != null) {
+                taken.clear();
+                lock.lock();
+                try {
+                    spare = taken;
+                } finally {
+                    lock.unlock();
+                }
+            }
+            if(flushed != null) flushed.forEach(future -> future.complete(null));
+            if(closing) {
+                synchronized (channelLock) {
+                    try {
+                        if(channel.isOpen()) channel.force(false);
+                        channel.close();
+                    } catch (IOException e) {
+                        report(e);
+                    }
+                }
+                return;
+            }
+            LockSupport.parkNanos(this, pending ? Math.max(0, flushIntervalNanos - (System.nanoTime() - lastWrite)) : flushIntervalNanos);
+        }
+    }
+
+    // called while holding the channel lock
+    private void write(ByteBuffer buffer) {
+        if(!buffer.hasRemaining()) return;
+        rollOverIfNeeded(buffer.remaining());
+        try {
+            // reopened here if a rollover or an earlier write left it closed
+            if(!channel.isOpen()) {
+                channel = open();
+                size = channel.size();
+            }
+            while(buffer.hasRemaining()) size += channel.write(buffer);
+        } catch (IOException e) {
+            report(e);
+        }
+    }
+
+    private void rollOverIfNeeded(int appended) {
+        RollingPolicy policy = this.policy;
+        if(policy == null) return;
+        long now = System.currentTimeMillis();
+        if(policy != appliedPolicy) {
+            appliedPolicy = policy;
+            nextRollover = policy.nextRollover(now);
+        }
+        if(now < nextRollover && !policy.exceeds(size, appended)) return;
+        nextRollover = policy.nextRollover(now);
+        if(size == 0) return;
+        try {
+            channel.force(false);
+            channel.close();
+            LogArchiver.archive(file.toPath(), policy.getMaxArchives());
+        } catch (IOException | RuntimeException e) {
+            // keeps appending to the same file if it could not be moved
+            System.err.println("Cannot roll over log file " + file + ": ");
+            e.printStackTrace(System.err);
+        }
+    }
+
+    private FileChannel open() throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    // only reached after closing
+    private void appendDirectly(byte[] bytes, int offset, int length) {
+        synchronized (channelLock) {
+            try(FileChannel channel = open()) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+                while(buffer.hasRemaining()) channel.write(buffer);
+            } catch (IOException e) {
+                report(e);
+            }
+        }
+    }
+
+    private void report(IOException e) {
+        System.err.println("Cannot write to log file " + file + ": ");
+        e.printStackTrace(System.err);
+    }
+}
@@ -1,21 +1,76 @@
 package io.github.rainvaporeon.fishutils.logging;
 
-import java.util.Arrays;
-
+import java.util.function.Supplier;
+
+/**
+ * A logger.
+ * <p></p>
+ * Besides plain messages, every severity accepts parameterized messages in
+ * which every {@code {}} is replaced by the next argument, such as
+ * {@code info("took {} ms", time)}, and {@link #log(Logger.Severity, Supplier)}
+ * accepts a {@link Supplier} of the message. Both are only evaluated if the
+ * severity is {@link ILogger#isEnabled(Logger.Severity) enabled}.
+ * <p></p>
+ * Several messages whose first one is not a string containing {@code {}},
+ * as well as arrays of messages, are logged as a list. There is no overload
+ * taking only an array or a supplier, so that {@code info(null)} logs the
+ * string {@code null} rather than being ambiguous.
+ */
 public interface ILogger {
 
     void newline();
 
+    /**
+     * Checks whether messages of a severity are logged anywhere
+     * @param severity the severity
+     * @return false if such messages are discarded
+     * @since 1.2.19
+     */
+    default boolean isEnabled(Logger.Severity severity) {
+        return true;
+    }
+
+    /**
+     * Logs a message only created if the severity is enabled
+     * @param severity the severity
+     * @param message the supplier of the message
+     * @since 1.2.19
+     */
+    default void log(Logger.Severity severity, Supplier<String> message) {
+        if(!isEnabled(severity)) return;
+        String text = message.get();
+        switch(severity) {
+            case SUCCESS -> success(text);
+            case INFO -> info(text);
+            case WARN -> warn(text);
+            case ERROR -> error(text);
+            case FATAL -> fatal(text);
+            case DEBUG -> debug(text);
+        }
+    }
+
     default void success(String message) {
         success(message, null);
     }
 
     default void success(Object message) {
-        success(String.valueOf(message));
+        if(!isEnabled(Logger.Severity.SUCCESS)) return;
+        if(message instanceof Object[] messages) success(MessageFormatter.format(messages), MessageFormatter.throwable(messages));
+        else success(String.valueOf(message));
+    }
+
+    default void success(Object first, Object second) {
+        if(isEnabled(Logger.Severity.SUCCESS)) success(MessageFormatter.format(first, second), null);
+    }
+
+    default void success(Object first, Object second, Object third) {
+        if(isEnabled(Logger.Severity.SUCCESS)) success(MessageFormatter.format(first, second, third), MessageFormatter.throwable(first, second, third));
     }
 
-    default void success(Object... messages) {
-        success(Arrays.toString(messages));
+    default void success(Object first, Object second, Object third, Object... more) {
+        if(!isEnabled(Logger.Severity.SUCCESS)) return;
+        Object[] messages = MessageFormatter.concat(first, second, third, more);
+        success(MessageFormatter.format(messages), MessageFormatter.throwable(messages));
     }
 
     void success(String message, Throwable t);
@@ -25,11 +80,23 @@ public interface ILogger {
     }
 
     default void info(Object message) {
-        info(String.valueOf(message));
+        if(!isEnabled(Logger.Severity.INFO)) return;
+        if(message instanceof Object[] messages) info(MessageFormatter.format(messages), MessageFormatter.throwable(messages));
+        else info(String.valueOf(message));
     }
 
-    default void info(Object... messages) {
-        info(Arrays.toString(messages));
+    default void info(Object first, Object second) {
+        if(isEnabled(Logger.Severity.INFO)) info(MessageFormatter.format(first, second), null);
+    }
+
+    default void info(Object first, Object second, Object third) {
+        if(isEnabled(Logger.Severity.INFO)) info(MessageFormatter.format(first, second, third), MessageFormatter.throwable(first, second, third));
+    }
+
+    default void info(Object first, Object second, Object third, Object... more) {
+        if(!isEnabled(Logger.Severity.INFO)) return;
+        Object[] messages = MessageFormatter.concat(first, second, third, more);
+        info(MessageFormatter.format(messages), MessageFormatter.throwable(messages));
     }
 
     void info(String message, Throwable t);
@@ -39,11 +106,23 @@ public interface ILogger {
     }
 
     default void warn(Object message) {
-        warn(String.valueOf(message));
+        if(!isEnabled(Logger.Severity.WARN)) return;
+        if(message instanceof Object[] messages) warn(MessageFormatter.format(messages), MessageFormatter.throwable(messages));
+        else warn(String.valueOf(message));
     }
 
-    default void warn(Object... messages) {
-        warn(Arrays.toString(messages));
+    default void warn(Object first, Object second) {
+        if(isEnabled(Logger.Severity.WARN)) warn(MessageFormatter.format(first, second), null);
+    }
+
+    default void warn(Object first, Object second, Object third) {
+        if(isEnabled(Logger.Severity.WARN)) warn(MessageFormatter.format(first, second, third), MessageFormatter.throwable(first, second, third));
+    }
+
+    default void warn(Object first, Object second, Object third, Object... more) {
+        if(!isEnabled(Logger.Severity.WARN)) return;
+        Object[] messages = MessageFormatter.concat(first, second, third, more);
+        warn(MessageFormatter.format(messages), MessageFormatter.throwable(messages));
     }
 
     void warn(String message, Throwable t);
@@ -53,11 +132,23 @@ public interface ILogger {
     }
 
     default void error(Object message) {
-        error(String.valueOf(message));
+        if(!isEnabled(Logger.Severity.ERROR)) return;
+        if(message instanceof Object[] messages) error(MessageFormatter.format(messages), MessageFormatter.throwable(messages));
+        else error(String.valueOf(message));
+    }
+
+    default void error(Object first, Object second) {
+        if(isEnabled(Logger.Severity.ERROR)) error(MessageFormatter.format(first, second), null);
     }
 
-    default void error(Object... messages) {
-        error(Arrays.toString(messages));
+    default void error(Object first, Object second, Object third) {
+        if(isEnabled(Logger.Severity.ERROR)) error(MessageFormatter.format(first, second, third), MessageFormatter.throwable(first, second, third));
+    }
+
+    default void error(Object first, Object second, Object third, Object... more) {
+        if(!isEnabled(Logger.Severity.ERROR)) return;
+        Object[] messages = MessageFormatter.concat(first, second, third, more);
+        error(MessageFormatter.format(messages), MessageFormatter.throwable(messages));
     }
 
     void error(String message, Throwable t);
@@ -67,11 +158,23 @@ public interface ILogger {
     }
 
     default void fatal(Object message) {
-        fatal(String.valueOf(message));
+        if(!isEnabled(Logger.Severity.FATAL)) return;
+        if(message instanceof Object[] messages) fatal(MessageFormatter.format(messages), MessageFormatter.throwable(messages));
+        else fatal(String.valueOf(message));
+    }
+
+    default void fatal(Object first, Object second) {
+        if(isEnabled(Logger.Severity.FATAL)) fatal(MessageFormatter.format(first, second), null);
     }
 
-    default void fatal(Object... messages) {
-        fatal(Arrays.toString(messages));
+    default void fatal(Object first, Object second, Object third) {
+        if(isEnabled(Logger.Severity.FATAL)) fatal(MessageFormatter.format(first, second, third), MessageFormatter.throwable(first, second, third));
+    }
+
+    default void fatal(Object first, Object second, Object third, Object... more) {
+        if(!isEnabled(Logger.Severity.FATAL)) return;
+        Object[] messages = MessageFormatter.concat(first, second, third, more);
+        fatal(MessageFormatter.format(messages), MessageFormatter.throwable(messages));
     }
 
     void fatal(String message, Throwable t);
@@ -79,11 +182,23 @@ public interface ILogger {
     void debug(String message);
 
     default void debug(Object message) {
-        debug(String.valueOf(message));
+        if(!isEnabled(Logger.Severity.DEBUG)) return;
+        if(message instanceof Object[] messages) debug(MessageFormatter.format(messages), MessageFormatter.throwable(messages));
+        else debug(String.valueOf(message));
+    }
+
+    default void debug(Object first, Object second) {
+        if(isEnabled(Logger.Severity.DEBUG)) debug(MessageFormatter.format(first, second), null);
+    }
+
+    default void debug(Object first, Object second, Object third) {
+        if(isEnabled(Logger.Severity.DEBUG)) debug(MessageFormatter.format(first, second, third), MessageFormatter.throwable(first, second, third));
     }
 
-    default void debug(Object... messages) {
-        debug(Arrays.toString(messages));
+    default void debug(Object first, Object second, Object third, Object... more) {
+        if(!isEnabled(Logger.Severity.DEBUG)) return;
+        Object[] messages = MessageFormatter.concat(first, second, third, more);
+        debug(MessageFormatter.format(messages), MessageFormatter.throwable(messages));
     }
 
     // @since 1.2.8, for some reason this was not added
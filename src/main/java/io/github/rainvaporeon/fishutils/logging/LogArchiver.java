@@ -0,0 +1,118 @@
+package io.github.rainvaporeon.fishutils.logging;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Moves rolled over log files aside, compressing and pruning
+ * the archives on a background thread.
+ * <p></p>
+ * The archives of {@code app.log} are named {@code app.log.<timestamp>.gz},
+ * so that they sort by age.
+ * @since 1.2.19
+ */
+final class LogArchiver {
+
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    // <timestamp>, a counter if two archives share a timestamp, and the extension once compressed
+    private static final Pattern ARCHIVE = Pattern.compile("\\.\\d{8}-\\d{6}-\\d{3}(-\\d+)?(\\.gz)?");
+
+    private static final String EXTENSION = ".gz";
+
+    private static final ExecutorService compressor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().daemon().name("Logger-archiver").factory());
+
+    // archives moved aside but not compressed yet, never pruned
+    private static final Set<Path> pending = ConcurrentHashMap.newKeySet();
+
+    private LogArchiver() {}
+
+    /**
+     * Moves the file aside, it is then compressed in the background
+     * @param file the closed log file
+     * @param maxArchives the amount of archives to keep
+     * @throws IOException if the file cannot be moved
+     */
+    static void archive(Path file, int maxArchives) throws IOException {
+        String stamp = STAMP.format(LocalDateTime.now());
+        Path archive = file.resolveSibling(file.getFileName() + "." + stamp);
+        for(int i = 1; Files.exists(archive) || Files.exists(compressed(archive)); i++) {
+            archive = file.resolveSibling(file.getFileName() + "." + stamp + "-" + i);
+        }
+        Files.move(file, archive, StandardCopyOption.ATOMIC_MOVE);
+        Path moved = archive.toAbsolutePath();
+        pending.add(moved);
+        compressor.execute(() -> {
+            try {
+                compress(moved);
+            } finally {
+                pending.remove(moved);
+            }
+            prune(file, maxArchives);
+        });
+    }
+
+    private static Path compressed(Path archive) {
+        return archive.resolveSibling(archive.getFileName() + EXTENSION);
+    }
+
+    private static void compress(Path archive) {
+        Path target = compressed(archive);
+        Path partial = archive.resolveSibling(archive.getFileName() + EXTENSION + ".tmp");
+        try {
+            try(InputStream in = Files.newInputStream(archive);
+                OutputStream out = new GZIPOutputStream(Files.newOutputStream(partial), 64 * 1024)) {
+                in.transferTo(out);
+            }
+            Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+            Files.delete(archive);
+        } catch (IOException e) {
+            // the uncompressed archive is kept
+            System.err.println("Cannot compress log archive " + archive + ": ");
+            e.printStackTrace(System.err);
+            try {
+                Files.deleteIfExists(partial);
+            } catch (IOException ignored) {}
+        }
+    }
+
+    // deletes the oldest archives of the file
+    private static void prune(Path file, int maxArchives) {
+        String name = file.getFileName().toString();
+        List<Path> archives = new ArrayList<>();
+        Path dir = file.toAbsolutePath().getParent();
+        try(DirectoryStream<Path> stream = Files.newDirectoryStream(dir, name + ".*")) {
+            for(Path path : stream) {
+                String suffix = path.getFileName().toString().substring(name.length());
+                if(ARCHIVE.matcher(suffix).matches() && !pending.contains(path.toAbsolutePath())) archives.add(path);
+            }
+        } catch (IOException e) {
+            return;
+        }
+        if(archives.size() <= maxArchives) return;
+        archives.sort(null);
+        for(Path path : archives.subList(0, archives.size() - maxArchives)) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ignored) {
+                // retried on the next rollover
+            }
+        }
+    }
+}
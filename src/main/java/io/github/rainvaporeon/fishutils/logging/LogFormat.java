@@ -0,0 +1,23 @@
+package io.github.rainvaporeon.fishutils.logging;
+
+/**
+ * How records are written to a log file.
+ * <p></p>
+ * Either way, records are written without the color codes
+ * used on the console.
+ * @see Loggers#setFormat(java.io.File, LogFormat)
+ * @since 1.2.19
+ */
+public enum LogFormat {
+    /**
+     * One line per record, as in {@code [2024-01-01 12:00:00] [name] INFO: message},
+     * followed by the stack trace of the throwable, if any
+     */
+    TEXT,
+    /**
+     * One JSON object per line, with the fields {@code time}, {@code logger},
+     * {@code severity}, {@code thread} and {@code message}, as well as
+     * {@code throwable} holding the stack trace, if any
+     */
+    JSON_LINES
+}
@@ -1,42 +1,275 @@
 package io.github.rainvaporeon.fishutils.logging;
 
 import java.io.File;
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class LogInternals {
 
     private LogInternals() {}
 
-    private static final List<File> sharedFileNames = new CopyOnWriteArrayList<>();
+    /**
+     * The sink of each file, by canonical path, kept while the file is open
+     * or has settings of its own
+     */
+    // 1.2.19: Replaces the list of shared files, each file is kept open
+    // once by the loggers writing to it, and written in the background
+    private static final Map<Path, Sink> sinks = new ConcurrentHashMap<>();
+
+    /**
+     * The canonical path of each file of a sink, as resolving it touches the file system
+     */
+    private static final Map<File, Path> canonicalPaths = new ConcurrentHashMap<>();
+
+    // How long the shutdown waits for each appender to write what is left
+    private static final long SHUTDOWN_TIMEOUT = 5000;
+
+    /**
+     * Releases the files of loggers that were not closed
+     */
+    static final Cleaner CLEANER = Cleaner.create(Thread.ofPlatform().daemon().name("Logger-cleaner").factory());
 
-    private static final Object accessor = new Object();
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(LogInternals::closeAll, "Logger-shutdown"));
+    }
 
     /**
-     * Retrieves the shared {@link File} instance for synchronizing
+     * Gets the sink of a file, without opening it
      * @param file the file
-     * @return the file, if one is present.
+     * @return the sink, shared by all files of the same canonical path,
+     * which may be removed before it is used
      */
-    static File getSharedObjectIfPresent(File file) {
-        synchronized (accessor) {
-            int index = sharedFileNames.indexOf(file);
-            if(index >= 0) return sharedFileNames.get(index);
-            return file;
+    static Sink sink(File file) {
+        return sinks.computeIfAbsent(canonicalPaths.computeIfAbsent(file, LogInternals::canonicalize), Sink::new);
+    }
+
+    // forgets a sink that is neither open nor configured
+    private static void remove(Sink sink) {
+        if(sinks.remove(sink.path, sink)) canonicalPaths.values().removeIf(sink.path::equals);
+    }
+
+    private static Path canonicalize(File file) {
+        try {
+            return file.getCanonicalFile().toPath();
+        } catch (IOException e) {
+            return file.toPath().toAbsolutePath().normalize();
         }
     }
 
-    // adds this entry if absent
-    static void appendFileIfAbsent(File file) {
-        synchronized (accessor) {
-            if(sharedFileNames.contains(file)) return;
-            sharedFileNames.add(file);
+    // sets the rolling policy of a file, retrying if the sink was just removed
+    static void setRollingPolicy(File file, RollingPolicy policy) {
+        while(!sink(file).setPolicy(policy));
+    }
+
+    // sets how records are written to a file, retrying if the sink was just removed
+    static void setFormat(File file, LogFormat format) {
+        while(!sink(file).setFormat(format));
+    }
+
+    // writes everything every open file has buffered
+    static void flushAll() {
+        sinks.values().forEach(sink -> {
+            FileAppender appender = sink.appender;
+            if(appender != null) appender.flush().join();
+        });
+    }
+
+    // closes every open file, writing what they have buffered
+    static void closeAll() {
+        sinks.values().forEach(Sink::shutdown);
+    }
+
+    /**
+     * A file, opened while at least one logger writes to it.
+     * <p></p>
+     * The settings of the file are kept while it is closed, and
+     * apply once it is opened again. Sinks with the default settings
+     * are removed once closed.
+     */
+    static final class Sink {
+        private final Path path;
+
+        // guarded by this
+        private int references;
+        private RollingPolicy policy;
+        private LogFormat format = LogFormat.TEXT;
+        private boolean removed;
+        /**
+         * Completed once the appender being closed wrote what it has buffered
+         */
+        private CompletableFuture<Void> closing;
+
+        private volatile FileAppender appender;
+
+        private Sink(Path path) {
+            this.path = path;
+        }
+
+        /**
+         * Opens the file if no logger writes to it yet
+         * @return the appender of the file, or null if the sink was removed
+         * @throws UncheckedIOException if the file cannot be opened
+         */
+        FileAppender acquire() {
+            while(true) {
+                CompletableFuture<Void> closing;
+                synchronized (this) {
+                    if(removed) return null;
+                    closing = this.closing;
+                    if(closing == null) return open();
+                }
+                // the file is opened again once the previous appender wrote
+                // what it has buffered, so that records do not overtake it
+                closing.join();
+            }
+        }
+
+        // called while holding this
+        private FileAppender open() {
+            if(appender == null) {
+                try {
+                    FileAppender appender = new FileAppender(path.toFile());
+                    appender.setPolicy(policy);
+                    appender.setFormat(format);
+                    this.appender = appender;
+                } catch (IOException e) {
+                    removeIfUnused();
+                    throw new UncheckedIOException("Cannot open log file " + path, e);
+                }
+            }
+            references++;
+            return appender;
+        }
+
+        /**
+         * Closes the file once no logger writes to it anymore
+         */
+        void release() {
+            FileAppender appender;
+            synchronized (this) {
+                if(references == 0) throw new IllegalStateException("released more often than acquired: " + path);
+                if(--references != 0) return;
+                appender = detach();
+                if(appender == null) {
+                    removeIfUnused();
+                    return;
+                }
+            }
+            close(appender);
+        }
+
+        /**
+         * Closes the file whether loggers write to it or not, when shutting down
+         */
+        void shutdown() {
+            FileAppender appender;
+            synchronized (this) {
+                appender = detach();
+            }
+            if(appender != null) close(appender);
+        }
+
+        /**
+         * Sets the rolling policy of the file
+         * @return false if the sink was removed
+         */
+        synchronized boolean setPolicy(RollingPolicy policy) {
+            if(removed) return false;
+            this.policy = policy;
+            if(appender != null) appender.setPolicy(policy);
+            return true;
+        }
+
+        /**
+         * Sets the format of the file
+         * @return false if the sink was removed
+         */
+        synchronized boolean setFormat(LogFormat format) {
+            if(removed) return false;
+            this.format = format;
+            if(appender != null) appender.setFormat(format);
+            return true;
+        }
+
+        // called while holding this
+        private void removeIfUnused() {
+            if(references != 0 || policy != null || format != LogFormat.TEXT) return;
+            removed = true;
+            remove(this);
+        }
+
+        // called while holding this, the appender is then closed by close(FileAppender)
+        private FileAppender detach() {
+            FileAppender appender = this.appender;
+            if(appender == null) return null;
+            this.appender = null;
+            this.closing = new CompletableFuture<>();
+            return appender;
+        }
+
+        // waits for the writer without holding this, so that neither other
+        // loggers of the file nor the cleaner are held up meanwhile
+        private void close(FileAppender appender) {
+            try {
+                appender.close(SHUTDOWN_TIMEOUT);
+            } finally {
+                CompletableFuture<Void> closing;
+                synchronized (this) {
+                    closing = this.closing;
+                    this.closing = null;
+                    removeIfUnused();
+                }
+                closing.complete(null);
+            }
         }
     }
 
-    // removes this entry, unused
-    static void removeFile(File file) {
-        synchronized (accessor) {
-            sharedFileNames.remove(file);
+    /**
+     * The file a logger writes to, released once the logger is
+     * closed or no longer reachable.
+     */
+    static final class Handle implements Runnable {
+        // guarded by this
+        private Sink sink;
+
+        private volatile FileAppender appender;
+
+        /**
+         * Switches to another file, opening it before releasing the current one
+         * @param file the file, or null to release the current one only
+         * @throws UncheckedIOException if the file cannot be opened
+         */
+        synchronized void open(File file) {
+            Sink next = null;
+            FileAppender appender = null;
+            // looked up again if the sink was removed in between
+            while(file != null && appender == null) {
+                next = LogInternals.sink(file);
+                appender = next.acquire();
+            }
+            Sink previous = this.sink;
+            this.sink = next;
+            this.appender = appender;
+            if(previous != null) previous.release();
+        }
+
+        FileAppender appender() {
+            return appender;
+        }
+
+        synchronized Sink sink() {
+            return sink;
+        }
+
+        // run by the cleaner
+        @Override
+        public void run() {
+            open(null);
         }
     }
 }
@@ -0,0 +1,81 @@
+package io.github.rainvaporeon.fishutils.logging;
+
+/**
+ * How many messages of a severity are logged, to keep floods of messages,
+ * such as during an incident, from drowning the log.
+ * <p></p>
+ * Messages are first sampled, each being logged with the given probability,
+ * and then rate limited by a token bucket, which logs a burst of messages at
+ * once and then the given amount of messages per second. Messages that are
+ * not logged are counted, and the counts are logged periodically.
+ * @see Logger#setLimit(Logger.Severity, LogLimit)
+ * @see Logger#setCallSiteLimit(Logger.Severity, LogLimit)
+ * @since 1.2.19
+ */
+public final class LogLimit {
+
+    /**
+     * The lowest rate, one message per day
+     */
+    public static final double MIN_PERMITS_PER_SECOND = 1.0 / (24 * 60 * 60);
+
+    /**
+     * The highest rate, one message per nanosecond
+     */
+    public static final double MAX_PERMITS_PER_SECOND = 1e9;
+
+    private final double permitsPerSecond;
+    private final int burst;
+    private final double probability;
+
+    /**
+     * Creates a limit
+     * @param permitsPerSecond the amount of messages logged per second, from {@link #MIN_PERMITS_PER_SECOND}
+     *                         to {@link #MAX_PERMITS_PER_SECOND}, or 0 for no limit
+     * @param burst the amount of messages logged at once, at least 1
+     * @param probability the probability of logging each message, from 0 (exclusive) to 1
+     */
+    public LogLimit(double permitsPerSecond, int burst, double probability) {
+        if(permitsPerSecond != 0 && !(permitsPerSecond >= MIN_PERMITS_PER_SECOND && permitsPerSecond <= MAX_PERMITS_PER_SECOND)) {
+            throw new IllegalArgumentException("invalid rate: " + permitsPerSecond);
+        }
+        if(burst < 1) throw new IllegalArgumentException("burst must be at least 1");
+        if(!(probability > 0 && probability <= 1)) throw new IllegalArgumentException("invalid probability: " + probability);
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.probability = probability;
+    }
+
+    public static LogLimit perSecond(double permitsPerSecond, int burst) {
+        return new LogLimit(permitsPerSecond, burst, 1);
+    }
+
+    public static LogLimit sampled(double probability) {
+        return new LogLimit(0, 1, probability);
+    }
+
+    /**
+     * Gets the amount of messages logged per second
+     * @return the rate, or 0 for no limit
+     */
+    public double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    public double getProbability() {
+        return probability;
+    }
+
+    @Override
+    public String toString() {
+        return "LogLimit{" +
+                "permitsPerSecond=" + permitsPerSecond +
+                ", burst=" + burst +
+                ", probability=" + probability +
+                '}';
+    }
+}
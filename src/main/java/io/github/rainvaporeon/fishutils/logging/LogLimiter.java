@@ -0,0 +1,272 @@
+package io.github.rainvaporeon.fishutils.logging;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Applies the {@link LogLimit}s of a logger, by severity and by call site.
+ * <p></p>
+ * Checking a limit takes a random number and a compare-and-set, without
+ * locking. Call sites are only looked up for severities limited by call site,
+ * as walking the stack is comparatively expensive. At most {@link #MAX_CALL_SITES}
+ * call sites are tracked per logger, beyond which an arbitrary one is forgotten
+ * for each new one. Call sites are told apart by the name of their class, so
+ * that they do not keep classes from being unloaded.
+ * <p></p>
+ * A single background thread logs the amount of suppressed messages of each
+ * limit once per summary interval, for as long as the logger is reachable.
+ * @since 1.2.19
+ */
+final class LogLimiter {
+
+    private static final int MAX_CALL_SITES = 1024;
+
+    private static final Logger.Severity[] SEVERITIES = Logger.Severity.values();
+
+    /**
+     * The shortest summary interval
+     */
+    static final long MIN_SUMMARY_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * How often suppressed messages are logged, shared by all loggers
+     */
+    private static volatile long summaryIntervalNanos = TimeUnit.SECONDS.toNanos(10);
+
+    private static final StackWalker WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+    private final WeakReference<Logger> logger;
+
+    private final AtomicReferenceArray<Bucket> severityBuckets = new AtomicReferenceArray<>(SEVERITIES.length);
+    private final AtomicReferenceArray<LogLimit> callSiteLimits = new AtomicReferenceArray<>(SEVERITIES.length);
+    private final Map<CallSite, Bucket> callSiteBuckets = new ConcurrentHashMap<>();
+
+    /**
+     * Sets how often suppressed messages are logged
+     * @param nanos the interval, at least {@link #MIN_SUMMARY_INTERVAL_NANOS}
+     */
+    static void setSummaryInterval(long nanos) {
+        if(nanos < MIN_SUMMARY_INTERVAL_NANOS) throw new IllegalArgumentException("interval must be at least 1 millisecond");
+        summaryIntervalNanos = nanos;
+        Reporter.schedule();
+    }
+
+    LogLimiter(Logger logger) {
+        this.logger = new WeakReference<>(logger);
+        Reporter.register(this);
+    }
+
+    void setLimit(Logger.Severity severity, LogLimit limit) {
+        Bucket previous = severityBuckets.getAndSet(severity.ordinal(), limit == null ? null : new Bucket(limit, severity, null));
+        if(previous != null) previous.report(this, System.nanoTime(), true);
+    }
+
+    void setCallSiteLimit(Logger.Severity severity, LogLimit limit) {
+        callSiteLimits.set(severity.ordinal(), limit);
+        callSiteBuckets.entrySet().removeIf(entry -> {
+            if(entry.getKey().severity != severity) return false;
+            entry.getValue().report(this, System.nanoTime(), true);
+            return true;
+        });
+    }
+
+    /**
+     * Checks whether a message may be logged, counting it as suppressed if not
+     * @param severity the severity of the message
+     * @return true if the message is logged
+     */
+    boolean allow(Logger.Severity severity) {
+        int ordinal = severity.ordinal();
+        Bucket bucket = severityBuckets.get(ordinal);
+        if(bucket != null && !bucket.allow()) return false;
+        LogLimit limit = callSiteLimits.get(ordinal);
+        if(limit == null) return true;
+        return callSiteBucket(severity, limit).allow();
+    }
+
+    private Bucket callSiteBucket(Logger.Severity severity, LogLimit limit) {
+        StackWalker.StackFrame frame = WALKER.walk(frames -> frames.filter(LogLimiter::isCaller).findFirst().orElse(null));
+        CallSite site = frame == null
+                ? new CallSite(severity, LogLimiter.class.getName(), "<unknown>", -1)
+                : new CallSite(severity, frame.getClassName(), frame.getMethodName(), frame.getByteCodeIndex());
+        Bucket bucket = callSiteBuckets.get(site);
+        if(bucket != null) return bucket;
+        if(callSiteBuckets.size() >= MAX_CALL_SITES) evict();
+        return callSiteBuckets.computeIfAbsent(site, k -> new Bucket(limit, severity, frame == null ? "an unknown call site" : frame.toStackTraceElement().toString()));
+    }
+
+    // forgets an arbitrary call site, logging what it suppressed
+    private void evict() {
+        Iterator<Map.Entry<CallSite, Bucket>> iterator = callSiteBuckets.entrySet().iterator();
+        if(!iterator.hasNext()) return;
+        Bucket evicted = iterator.next().getValue();
+        iterator.remove();
+        evicted.report(this, System.nanoTime(), true);
+    }
+
+    // the first frame outside of the loggers
+    private static boolean isCaller(StackWalker.StackFrame frame) {
+        Class<?> type = frame.getDeclaringClass();
+        return type != LogLimiter.class && !ILogger.class.isAssignableFrom(type);
+    }
+
+    /**
+     * Logs the suppressed messages of every limit whose summary is due
+     * @param now the current time
+     * @param force whether to log them regardless of the interval
+     */
+    private void reportAll(long now, boolean force) {
+        for(int i = 0; i < severityBuckets.length(); i++) {
+            Bucket bucket = severityBuckets.get(i);
+            if(bucket != null) bucket.report(this, now, force);
+        }
+        callSiteBuckets.values().forEach(bucket -> bucket.report(this, now, force));
+    }
+
+    /**
+     * A token bucket, as a generic cell rate algorithm: the state is the time at
+     * which the bucket would be full again, advanced by one interval per message.
+     */
+    private static final class Bucket {
+        // keeps the time of the bucket being full far from overflowing
+        private static final long MAX_TOLERANCE = Long.MAX_VALUE / 4;
+
+        private final LogLimit limit;
+        private final Logger.Severity severity;
+        private final String source;
+        private final long interval;
+        private final long tolerance;
+
+        private final AtomicLong fullAt = new AtomicLong(Long.MIN_VALUE);
+        private final LongAdder suppressed = new LongAdder();
+        private final AtomicLong lastReport = new AtomicLong(System.nanoTime());
+
+        private Bucket(LogLimit limit, Logger.Severity severity, String source) {
+            this.limit = limit;
+            this.severity = severity;
+            this.source = source;
+            // at least 1, as the rate is at most one message per nanosecond
+            this.interval = limit.getPermitsPerSecond() == 0 ? 0 : Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / limit.getPermitsPerSecond()));
+            this.tolerance = interval == 0 || limit.getBurst() - 1 <= MAX_TOLERANCE / interval ? interval * (limit.getBurst() - 1) : MAX_TOLERANCE;
+        }
+
+        private boolean allow() {
+            if(limit.getProbability() < 1 && ThreadLocalRandom.current().nextDouble() >= limit.getProbability()) {
+                suppressed.increment();
+                return false;
+            }
+            if(interval == 0) return true;
+            long now = System.nanoTime();
+            while(true) {
+                long fullAt = this.fullAt.get();
+                long from = fullAt == Long.MIN_VALUE || fullAt - now < 0 ? now : fullAt;
+                if(from - now > tolerance) {
+                    suppressed.increment();
+                    return false;
+                }
+                if(this.fullAt.compareAndSet(fullAt, from + interval)) return true;
+            }
+        }
+
+        private void report(LogLimiter limiter, long now, boolean force) {
+            long last = lastReport.get();
+            if(!force && now - last < summaryIntervalNanos) return;
+            if(!lastReport.compareAndSet(last, now)) return;
+            long count = suppressed.sumThenReset();
+            if(count == 0) return;
+            Logger logger = limiter.logger.get();
+            if(logger == null) return;
+            long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(now - last));
+            logger.logUnlimited(severity, "Suppressed " + count + " " + severity.name() + (count == 1 ? " message" : " messages")
+                    + (source == null ? "" : " from " + source) + " in the last " + seconds + (seconds == 1 ? " second" : " seconds"), null);
+        }
+    }
+
+    private static final class CallSite {
+        private final Logger.Severity severity;
+        private final String type;
+        private final String method;
+        private final int index;
+
+        private CallSite(Logger.Severity severity, String type, String method, int index) {
+            this.severity = severity;
+            this.type = type;
+            this.method = method;
+            this.index = index;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) return true;
+            if(!(o instanceof CallSite site)) return false;
+            return index == site.index && severity == site.severity && type.equals(site.type) && method.equals(site.method);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(severity, type, method, index);
+        }
+    }
+
+    /**
+     * Logs the suppressed messages of all limiters in the background, checking
+     * {@link #CHECKS_PER_INTERVAL} times per summary interval which are due, so
+     * that summaries are late by a fraction of the interval at most
+     */
+    private static final class Reporter {
+        private static final int CHECKS_PER_INTERVAL = 4;
+
+        private static final Queue<WeakReference<LogLimiter>> limiters = new ConcurrentLinkedQueue<>();
+
+        private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().daemon().name("Logger-limits").factory());
+
+        // guarded by Reporter.class
+        private static ScheduledFuture<?> checks;
+
+        static {
+            schedule();
+        }
+
+        // schedules the checks for the current interval, replacing the previous ones
+        private static synchronized void schedule() {
+            if(checks != null) checks.cancel(false);
+            long period = summaryIntervalNanos / CHECKS_PER_INTERVAL;
+            checks = executor.scheduleWithFixedDelay(Reporter::reportAll, period, period, TimeUnit.NANOSECONDS);
+        }
+
+        private static void register(LogLimiter limiter) {
+            limiters.add(new WeakReference<>(limiter));
+        }
+
+        private static void reportAll() {
+            long now = System.nanoTime();
+            for(Iterator<WeakReference<LogLimiter>> iterator = limiters.iterator(); iterator.hasNext();) {
+                LogLimiter limiter = iterator.next().get();
+                if(limiter == null) {
+                    iterator.remove();
+                    continue;
+                }
+                try {
+                    limiter.reportAll(now, false);
+                } catch (RuntimeException e) {
+                    // keeps reporting the other limiters
+                    e.printStackTrace(System.err);
+                }
+            }
+        }
+    }
+}
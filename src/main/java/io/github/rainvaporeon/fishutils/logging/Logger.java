@@ -1,31 +1,43 @@
 package io.github.rainvaporeon.fishutils.logging;
 
 import io.github.rainvaporeon.fishutils.action.Result;
-import io.github.rainvaporeon.fishutils.utils.noop.io.NoOpPrintStream;
 
 import java.io.*;
-import java.lang.reflect.Field;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.List;
+import java.time.Duration;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
 import java.util.Objects;
 
 public class Logger implements ILogger {
 
     private static final String RESET = "\033[0m";
 
-    private static final SimpleDateFormat DEFAULT = new SimpleDateFormat("yyyy-MM-dd hh:mm:ss");
+    // 1.2.19: Constant parts of encoded records
+    private static final byte[] RESET_LINE = bytes(RESET + System.lineSeparator());
+    private static final byte[] NEWLINE_BRACKET = bytes("\n[");
+    private static final byte[] JSON_TIME = bytes("{\"time\":\"");
+    private static final byte[] JSON_MESSAGE = bytes("\",\"message\":\"");
+    private static final byte[] JSON_THROWABLE = bytes("\",\"throwable\":\"");
+    private static final byte[] JSON_END = bytes("\"}\n");
 
     // 1.2.8: Removed creator thread control, simply redundancy.
 
-    private final File out;
+    private volatile File out;
+
+    // 1.2.19: The shared sink of the file, written in the background
+    private final LogInternals.Handle handle = new LogInternals.Handle();
 
     private final String name;
 
-    private final SimpleDateFormat format;
+    // 1.2.19: The name as encoded in each record
+    private final byte[] consolePrefix;
+    private final byte[] filePrefix;
+    private final byte[] jsonPrefix;
+
+    // 1.2.19: Thread-safe, and reused within the same millisecond
+    private final TimestampCache timestamps;
 
     // 1.2.6: Logger enhancements
     private PrintStream stream;
@@ -34,12 +46,28 @@ public class Logger implements ILogger {
     private PrintStream errStream;
     private PrintStream debugStream;
 
+    // 1.2.19: Severity threshold
+    private volatile int minimumLevel = Severity.DEBUG.level;
+
+    // 1.2.19: Stack traces logged recently, if deduplicated
+    private volatile TraceDeduplicator deduplicator;
+
+    // 1.2.19: Compact binary records, alongside the file
+    private volatile BinaryTarget binary;
+
+    // 1.2.19: Rate limits and sampling, created once set
+    private volatile LogLimiter limiter;
+
+    // 1.2.19: The cached logger this one was copied from, kept cached while
+    // any of its copies is reachable
+    private final Logger shared;
+
     public Logger(String name) {
         this(name, null);
     }
 
     public Logger(String name, File out) {
-        this(name, out, DEFAULT);
+        this(name, out, TimestampCache.DEFAULT, null);
     }
 
     public Logger(String name, File out, SimpleDateFormat dateFormat) {
@@ -47,14 +75,73 @@ public class Logger implements ILogger {
     }
 
     public Logger(String name, File out, SimpleDateFormat dateFormat, PrintStream stream) {
+        this(name, out, TimestampCache.of(dateFormat), stream);
+    }
+
+    /**
+     * Creates a logger
+     * @param name the name
+     * @param out the file to write to, or null
+     * @param dateFormat the format of the timestamp of each line in the file
+     * @since 1.2.19
+     */
+    public Logger(String name, File out, DateTimeFormatter dateFormat) {
+        this(name, out, dateFormat, null);
+    }
+
+    public Logger(String name, File out, DateTimeFormatter dateFormat, PrintStream stream) {
+        this(name, out, TimestampCache.of(dateFormat), stream);
+    }
+
+    // registering with the cleaner only keeps a phantom reference to this logger
+    @SuppressWarnings("this-escape")
+    private Logger(String name, File out, TimestampCache timestamps, PrintStream stream) {
         this.name = name;
-        this.out = LogInternals.getSharedObjectIfPresent(out);
-        this.format = Objects.requireNonNull(dateFormat);
+        this.consolePrefix = bytes("[" + name + "] ");
+        this.filePrefix = bytes("] [" + name + "] ");
+        RecordBuffer json = RecordBuffer.acquire();
+        try {
+            json.append(bytes("\",\"logger\":\"")).appendJson(name).append(bytes("\",\"severity\":\""));
+            this.jsonPrefix = Arrays.copyOf(json.array(), json.length());
+        } finally {
+            json.release();
+        }
+        this.out = out;
+        this.timestamps = timestamps;
         this.stream = stream;
         this.errStream = stream;
         this.debugStream = stream;
+        this.shared = null;
+        open();
+    }
 
-        LogInternals.appendFileIfAbsent(out);
+    /**
+     * Creates an unconfigured logger of the same name and file as a cached logger
+     * @param shared the cached logger
+     */
+    @SuppressWarnings("this-escape")
+    Logger(Logger shared) {
+        this.name = shared.name;
+        this.consolePrefix = shared.consolePrefix;
+        this.filePrefix = shared.filePrefix;
+        this.jsonPrefix = shared.jsonPrefix;
+        this.out = shared.out;
+        this.timestamps = shared.timestamps;
+        this.shared = shared;
+        open();
+    }
+
+    // opens the output file, called once constructed
+    private void open() {
+        try {
+            handle.open(out);
+        } catch (UncheckedIOException e) {
+            // keeps logging to the streams, as when the file could not be written to before
+            System.err.println("Cannot open log file " + out + " of logger " + name + ", logging to the console only: ");
+            e.getCause().printStackTrace(System.err);
+            this.out = null;
+        }
+        LogInternals.CLEANER.register(this, handle);
     }
 
     /**
@@ -70,16 +157,124 @@ public class Logger implements ILogger {
     public Result setOut(File out) {
         try {
             if(!out.exists()) out.createNewFile();
-            Field field = this.getClass().getDeclaredField("out");
-            field.setAccessible(true);
-            field.set(this, out);
+            handle.open(out);
+            this.out = out;
             return Result.SUCCESS;
-        } catch (ReflectiveOperationException | IOException e) {
+        } catch (IOException | UncheckedIOException e) {
             this.fatal("Could not set out of " + this.name + ":", e);
             return Result.ERROR;
         }
     }
 
+    /**
+     * Sets when the output file is rolled over, this applies to all loggers writing to the file
+     * @param policy the policy, or null to never roll over
+     * @throws IllegalStateException if this logger has no output file
+     * @see Loggers#setRollingPolicy(File, RollingPolicy)
+     * @since 1.2.19
+     */
+    public void setRollingPolicy(RollingPolicy policy) {
+        sink().setPolicy(policy);
+    }
+
+    /**
+     * Sets how records are written to the output file, this applies to all loggers writing to the file
+     * @param format the format, {@link LogFormat#TEXT} by default
+     * @throws IllegalStateException if this logger has no output file
+     * @see Loggers#setFormat(File, LogFormat)
+     * @since 1.2.19
+     */
+    public void setFormat(LogFormat format) {
+        sink().setFormat(Objects.requireNonNull(format));
+    }
+
+    /**
+     * Logs stack traces that were logged recently as a reference to the first one,
+     * as in {@code same as #3, repeated 5 times}, to keep error storms short
+     * @param window how long a stack trace is referred to before it is logged
+     *               in full again, or null to always log stack traces in full
+     * @since 1.2.19
+     */
+    public void setStackTraceDeduplication(Duration window) {
+        if(window != null && (window.isNegative() || window.isZero())) throw new IllegalArgumentException("window must be positive");
+        this.deduplicator = window == null ? null : new TraceDeduplicator(window.toNanos());
+    }
+
+    /**
+     * Sets the binary sink this logger writes to as well, which is far cheaper to
+     * write to than the output file and meant for logging at high volume
+     * @param sink the sink, or null to stop writing to it
+     * @see BinaryLogReader
+     * @since 1.2.19
+     */
+    public void setBinarySink(BinaryLogSink sink) {
+        this.binary = sink == null ? null : new BinaryTarget(sink, sink.nameId(name));
+    }
+
+    /**
+     * Limits how many messages of a severity this logger logs, messages beyond
+     * the limit are counted and the count is logged periodically
+     * @param severity the severity
+     * @param limit the limit, or null to log every message
+     * @see Loggers#setSuppressionSummaryInterval(Duration)
+     * @since 1.2.19
+     */
+    public void setLimit(Severity severity, LogLimit limit) {
+        limiter().setLimit(severity, limit);
+    }
+
+    /**
+     * Limits how many messages of a severity each call site logs through this logger,
+     * messages beyond the limit are counted and the count is logged periodically
+     * @param severity the severity
+     * @param limit the limit applying to each call site, or null to log every message
+     * @apiNote looking up the call site walks the stack, which makes logging messages
+     * of the severity more expensive, though far less so than writing them.
+     * @see Loggers#setSuppressionSummaryInterval(Duration)
+     * @since 1.2.19
+     */
+    public void setCallSiteLimit(Severity severity, LogLimit limit) {
+        limiter().setCallSiteLimit(severity, limit);
+    }
+
+    private LogLimiter limiter() {
+        LogLimiter limiter = this.limiter;
+        if(limiter != null) return limiter;
+        synchronized (this) {
+            if(this.limiter == null) this.limiter = new LogLimiter(this);
+            return this.limiter;
+        }
+    }
+
+    /**
+     * Writes every line logged so far to the output file, waiting until written
+     * @apiNote lines are otherwise written in the background, at the latest once the
+     * flush interval elapsed, and right away at severity {@code ERROR} or {@code FATAL}.
+     * @since 1.2.19
+     */
+    public void flush() {
+        FileAppender appender = handle.appender();
+        if(appender != null) appender.flush().join();
+    }
+
+    /**
+     * Stops writing to the output file, which is closed once no other logger writes to it,
+     * the logger keeps logging to its streams
+     * @apiNote the output file is released as well once the logger is no longer reachable,
+     * closing it only releases the file sooner.
+     * @since 1.2.19
+     */
+    public void close() {
+        handle.open(null);
+        this.out = null;
+    }
+
+    private LogInternals.Sink sink() {
+        LogInternals.Sink sink = handle.sink();
+        if(sink == null) throw new IllegalStateException("logger " + name + " has no output file");
+        return sink;
+    }
+
     /**
      * Sets the output stream source
      * @param stream the stream
@@ -120,19 +315,77 @@ public class Logger implements ILogger {
         this.debugStream = stream;
     }
 
-    public void log(Severity severity, String message, Throwable t) {
-        PrintStream stream = this.getOutput(severity);
+    /**
+     * Sets the lowest severity this logger logs, messages of a lower
+     * severity are discarded without being formatted
+     * @param severity the minimum severity, {@code DEBUG} by default
+     * @since 1.2.19
+     */
+    public void setMinimumSeverity(Severity severity) {
+        this.minimumLevel = severity.level;
+    }
+
+    /**
+     * Gets the lowest severity this logger logs
+     * @return the lowest severity, of the same level as the minimum severity
+     * @since 1.2.19
+     */
+    public Severity getMinimumSeverity() {
+        int level = this.minimumLevel;
+        for(Severity severity : Severity.values()) {
+            if(severity.level == level) return severity;
+        }
+        throw new AssertionError(level);
+    }
 
-        stream.println("[" + name + "] " + severity + message + RESET);
+    /**
+     * Checks whether messages of a severity are logged, that is, whether
+     * the severity is at least the minimum severity and the messages are
+     * written to either a stream or a file.
+     * @param severity the severity
+     * @return false if such messages are discarded
+     * @since 1.2.19
+     */
+    @Override
+    public boolean isEnabled(Severity severity) {
+        if(severity.level < minimumLevel) return false;
+        return handle.appender() != null || binary != null || getStream(severity) != null;
+    }
 
-        if(out != null)
-            writeLog("[" + name + "] " + severity + ": " + message);
-        if (t != null) {
-            stream.print(severity);
-            t.printStackTrace(getOutput(Severity.ERROR));
-            stream.println(RESET);
-            if(out != null)
-                writeError(t);
+    public void log(Severity severity, String message, Throwable t) {
+        if(severity.level < minimumLevel) return;
+        LogLimiter limiter = this.limiter;
+        if(limiter != null && !limiter.allow(severity)) return;
+        logUnlimited(severity, message, t);
+    }
+
+    // logs regardless of the limits, which also log through this
+    void logUnlimited(Severity severity, String message, Throwable t) {
+        PrintStream stream = this.getStream(severity);
+        PrintStream errStream = t == null ? null : this.getStream(Severity.ERROR);
+        FileAppender appender = handle.appender();
+        BinaryTarget binary = this.binary;
+        boolean urgent = severity == Severity.ERROR || severity == Severity.FATAL;
+
+        // 1.2.19: The message and the stack trace are encoded once into a reused
+        // buffer, and copied from it into the record of each output
+        RecordBuffer record = RecordBuffer.acquire();
+        try {
+            int messageEnd = record.appendUtf8(message).length();
+            int traceStart = t == null ? messageEnd : writeStackTrace(t, record);
+            int traceEnd = record.length();
+            if(stream != null) writeConsole(stream, severity, message, record, messageEnd);
+            if(errStream != null) writeConsoleTrace(errStream, severity, record, traceStart, traceEnd);
+            if(appender != null) {
+                if(appender.getFormat() == LogFormat.JSON_LINES) {
+                    writeJson(appender, severity, record, messageEnd, traceStart, traceEnd, urgent);
+                } else {
+                    writeText(appender, severity, record, messageEnd, traceStart, traceEnd, urgent);
+                }
+            }
+            if(binary != null) binary.sink.write(severity, binary.nameId, record.array(), messageEnd, traceStart, traceEnd);
+        } finally {
+            record.release();
         }
     }
 
@@ -210,111 +463,136 @@ public class Logger implements ILogger {
         log(Severity.DEBUG, message, t);
     }
 
-    // Since the log is same across all threads, we use static
+    // [name] <color>message<reset>, as UTF-8 if the stream encodes as such
+    private void writeConsole(PrintStream stream, Severity severity, String message, RecordBuffer record, int messageEnd) {
+        if(!StandardCharsets.UTF_8.equals(stream.charset())) {
+            stream.println("[" + name + "] " + severity + message + RESET);
+            return;
+        }
+        int start = record.length();
+        record.append(consolePrefix).append(severity.colorBytes).copy(0, messageEnd).append(RESET_LINE);
+        stream.write(record.array(), start, record.length() - start);
+    }
 
-    /**
-     * Writes to the logging file. This will get the
-     * logging file, append a new line and then
-     * append the provided contents.
-     *
-     * @param contents The contents to append to
-     */
-    private void writeLog(String... contents) {
-        if(out == null) throw new NullPointerException();
-        try {
-            append(out.toPath(), contents);
-        } catch (Exception e) {
-            e.printStackTrace(getOutput(Severity.ERROR));
+    // <color>stack trace<reset>
+    private void writeConsoleTrace(PrintStream stream, Severity severity, RecordBuffer record, int traceStart, int traceEnd) {
+        if(!StandardCharsets.UTF_8.equals(stream.charset())) {
+            stream.print(severity + new String(record.array(), traceStart, traceEnd - traceStart, StandardCharsets.UTF_8));
+            stream.println(RESET);
+            return;
         }
+        int start = record.length();
+        record.append(severity.colorBytes).copy(traceStart, traceEnd).append(RESET_LINE);
+        stream.write(record.array(), start, record.length() - start);
+    }
+
+    // \n[time] [name] SEVERITY: message, followed by the stack trace, if any
+    private void writeText(FileAppender appender, Severity severity, RecordBuffer record, int messageEnd, int traceStart, int traceEnd, boolean urgent) {
+        int start = record.length();
+        record.append(NEWLINE_BRACKET).append(timestamps.nowBytes()).append(filePrefix).append(severity.labelBytes).copy(0, messageEnd);
+        if(traceStart != traceEnd) record.append((byte) '\n').copy(traceStart, traceEnd);
+        appender.append(record.array(), start, record.length() - start, urgent);
+    }
+
+    // {"time":..,"logger":..,"severity":..,"thread":..,"message":..[,"throwable":..]}
+    private void writeJson(FileAppender appender, Severity severity, RecordBuffer record, int messageEnd, int traceStart, int traceEnd, boolean urgent) {
+        int start = record.length();
+        record.append(JSON_TIME).append(TimestampCache.ISO.nowBytes()).append(jsonPrefix).append(severity.jsonBytes)
+                .appendJson(Thread.currentThread().getName()).append(JSON_MESSAGE).copyJson(0, messageEnd);
+        if(traceStart != traceEnd) record.append(JSON_THROWABLE).copyJson(traceStart, traceEnd);
+        record.append(JSON_END);
+        appender.append(record.array(), start, record.length() - start, urgent);
     }
 
     /**
-     * Prints the specified throwable instance
-     * to the logging file. This always append
-     * a new line before printing the exception.
+     * Renders the stack trace of the specified throwable
+     * into the record, once for all outputs.
      *
-     * @param t The throwable to print
+     * @param t The throwable to render
+     * @return the start of the rendered trace, which ends with the record
      */
-    private void writeError(Throwable t) {
-        if(out == null) throw new NullPointerException();
-        synchronized (out) {
-            try(PrintStream stream = new PrintStream(new FileOutputStream(out, true))) {
-                newline(out.toPath());
-                t.printStackTrace(stream);
-            } catch (FileNotFoundException e) {
-                getOutput(Severity.ERROR).println("Cannot write to error: ");
-                e.printStackTrace(getOutput(Severity.ERROR));
-            }
+    private int writeStackTrace(Throwable t, RecordBuffer record) {
+        int start = record.length();
+        StackTraceRenderer.render(t, record);
+        TraceDeduplicator deduplicator = this.deduplicator;
+        if(deduplicator == null) return start;
+        int end = record.length();
+        TraceDeduplicator.Trace trace = deduplicator.record(record.hash(start, end));
+        int repeats = trace.repeat();
+        if(repeats == 0) {
+            // numbered, for repetitions to refer to
+            record.appendUtf8("#" + trace.number() + " ").copy(start, end);
+            return end;
         }
+        record.truncate(start);
+        record.appendUtf8("same as #" + trace.number() + ", repeated " + repeats + (repeats == 1 ? " time\n" : " times\n"));
+        return start;
     }
 
-    private PrintStream getOutput(Severity severity) {
+    private PrintStream getStream(Severity severity) {
         return switch (severity) {
-            case INFO, SUCCESS, WARN -> {
-                if (stream == null) yield new NoOpPrintStream();
-                yield stream;
-            }
-            case ERROR, FATAL -> {
-                if (errStream == null) yield new NoOpPrintStream();
-                yield errStream;
-            }
-            case DEBUG -> {
-                if (debugStream == null) yield new NoOpPrintStream();
-                yield debugStream;
-            }
+            case INFO, SUCCESS, WARN -> stream;
+            case ERROR, FATAL -> errStream;
+            case DEBUG -> debugStream;
         };
     }
 
-    // Creates a new line
-    private void newline(Path p) {
-        append(p, false, false, "\n");
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
     }
 
-    // Appends to the given path, providing date to log, and adds a new line before printing the content.
-    // Each new entry will be printed a new line if the newLine option is true
-    private void append(Path path, String... content) {
-        append(path, true, true, content);
-    }
+    private static final class BinaryTarget {
+        private final BinaryLogSink sink;
+        private final int nameId;
 
-    /**
-     * Appends content to the log
-     * @param path The path to append to
-     * @param date Whether to timestamp
-     * @param newLine Whether a new line is required
-     * @param content Content to append
-     */
-    private void append(Path path, boolean date, boolean newLine, String... content) {
-        try {
-            synchronized (out) {
-                for(String line : content) {
-                    if(newLine && !line.equals("\n")) {
-                        newline(path);
-                    }
-                    Files.writeString(path, date ? "[" + format.format(new Date()) + "] " + line : line, StandardOpenOption.APPEND, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace(getOutput(Severity.ERROR));
+        private BinaryTarget(BinaryLogSink sink, int nameId) {
+            this.sink = sink;
+            this.nameId = nameId;
         }
     }
 
     // https://en.wikipedia.org/wiki/ANSI_escape_code
     public enum Severity {
-        SUCCESS(32),
-        INFO(0),
-        WARN(33),
-        ERROR(91),
-        FATAL(31),
-        DEBUG(35);
+        SUCCESS(32, 1),
+        INFO(0, 1),
+        WARN(33, 2),
+        ERROR(91, 3),
+        FATAL(31, 4),
+        DEBUG(35, 0);
 
         private final int color;
 
-        Severity(int color) {
+        /**
+         * The importance of the severity, as the declaration order is not
+         */
+        // 1.2.19: Added for severity thresholds
+        private final int level;
+
+        // 1.2.19: As encoded in records
+        private final byte[] colorBytes;
+        private final byte[] labelBytes;
+        private final byte[] jsonBytes;
+
+        Severity(int color, int level) {
             this.color = color;
+            this.level = level;
+            this.colorBytes = bytes(getColor());
+            this.labelBytes = bytes(name() + ": ");
+            this.jsonBytes = bytes(name() + "\",\"thread\":\"");
         }
 
         Severity() {
-            this.color = 97;
+            this(97, 1);
+        }
+
+        /**
+         * Gets the importance of this severity, {@code DEBUG} being the
+         * least important and {@code FATAL} the most important
+         * @return the level
+         * @since 1.2.19
+         */
+        public int getLevel() {
+            return level;
         }
 
         public String getColor() {
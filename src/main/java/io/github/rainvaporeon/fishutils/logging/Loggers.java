@@ -3,11 +3,19 @@ package io.github.rainvaporeon.fishutils.logging;
 import io.github.rainvaporeon.fishutils.misc.StableField;
 
 import java.io.File;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class Loggers {
 
     public static final ILogger NO_OP = new ILogger() {
         @Override public void newline() {}
+        @Override public boolean isEnabled(Logger.Severity severity) { return false; }
         @Override public void success(String message, Throwable t) {}
         @Override public void info(String message, Throwable t) {}
         @Override public void warn(String message, Throwable t) {}
@@ -18,6 +26,16 @@ public final class Loggers {
 
     private static final StableField<File> DEFAULT = new StableField<>(null);
 
+    // 1.2.19: Named loggers are copied rather than created on every call,
+    // and kept while any copy of them is reachable
+    private static final Map<Key, CachedLogger> loggers = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<Logger> collected = new ReferenceQueue<>();
+
+    /**
+     * The last logger of each thread, gone along with the thread
+     */
+    private static final ThreadLocal<ThreadLogger> threadLoggers = new ThreadLocal<>();
+
     private Loggers() {
 
     }
@@ -32,6 +50,57 @@ public final class Loggers {
         DEFAULT.set(out);
     }
 
+    /**
+     * Sets how long logged lines may stay buffered before being written
+     * to their file, this applies to all loggers.
+     * @param interval the flush interval, 100 milliseconds by default
+     * @throws IllegalArgumentException if the interval is not positive
+     * @since 1.2.19
+     */
+    public static void setFlushInterval(Duration interval) {
+        if(interval.isNegative() || interval.isZero()) throw new IllegalArgumentException("interval must be positive");
+        FileAppender.flushIntervalNanos = interval.toNanos();
+    }
+
+    /**
+     * Sets when a log file is rolled over, this applies to all loggers writing to the file
+     * @param out the log file
+     * @param policy the policy, or null to never roll over
+     * @since 1.2.19
+     */
+    public static void setRollingPolicy(File out, RollingPolicy policy) {
+        LogInternals.setRollingPolicy(out, policy);
+    }
+
+    /**
+     * Sets how records are written to a log file, this applies to all loggers writing to the file
+     * @param out the log file
+     * @param format the format, {@link LogFormat#TEXT} by default
+     * @since 1.2.19
+     */
+    public static void setFormat(File out, LogFormat format) {
+        LogInternals.setFormat(out, Objects.requireNonNull(format));
+    }
+
+    /**
+     * Sets how often the amount of messages suppressed by a {@link LogLimit} is logged,
+     * this applies to all loggers.
+     * @param interval the interval, 10 seconds by default
+     * @throws IllegalArgumentException if the interval is shorter than 1 millisecond
+     * @since 1.2.19
+     */
+    public static void setSuppressionSummaryInterval(Duration interval) {
+        LogLimiter.setSummaryInterval(interval.toNanos());
+    }
+
+    /**
+     * Writes every line logged so far by any logger to its file, waiting until written
+     * @since 1.2.19
+     */
+    public static void flushAll() {
+        LogInternals.flushAll();
+    }
+
     /**
      * Returns a pre-configured logger, with the print stream
      * as the ones specified in System (System.out and System.err)
@@ -46,10 +115,17 @@ public final class Loggers {
      * as the ones specified in System (System.out and System.err)
      * @param out the output file to write to
      * @return a logger
+     * @apiNote the logger is reused by the current thread for as long as it keeps
+     * its name and writes to the same file, so it should not be reconfigured.
      */
     public static Logger getThreadLogger(File out) {
-        final Logger logger = new Logger("Thread #" + Thread.currentThread().getId() + "/" + Thread.currentThread().getName(), out);
+        Thread thread = Thread.currentThread();
+        String threadName = thread.getName();
+        ThreadLogger cached = threadLoggers.get();
+        if(cached != null && cached.threadName.equals(threadName) && Objects.equals(cached.out, out)) return cached.logger;
+        final Logger logger = new Logger("Thread #" + thread.getId() + "/" + threadName, out);
         logger.configured();
+        threadLoggers.set(new ThreadLogger(logger, threadName, out));
         return logger;
     }
 
@@ -66,11 +142,11 @@ public final class Loggers {
      * Returns a pre-configured logger, with the print stream
      * as the ones specified in System (System.out and System.err)
      * @return a logger
+     * @apiNote every call returns a logger of its own, which may be reconfigured
+     * and closed without affecting other loggers of the same name.
      */
     public static Logger getLogger(String name) {
-        Logger logger = new Logger(name, DEFAULT.get());
-        logger.configured();
-        return logger;
+        return getLogger(name, DEFAULT.get());
     }
 
     /**
@@ -86,13 +162,40 @@ public final class Loggers {
      * as the ones specified in System (System.out and System.err)
      * @param out the output file to write to
      * @return a logger
+     * @apiNote every call returns a logger of its own, which may be reconfigured
+     * and closed without affecting other loggers of the same name and file.
+     * The settings of the file itself, such as {@link Loggers#setFormat(File, LogFormat)},
+     * still apply to all of them.
      */
     public static Logger getLogger(String name, File out) {
-        Logger logger = new Logger(name, out);
+        Logger logger = new Logger(cached(new Key(name, out)));
         logger.configured();
         return logger;
     }
 
+    // gets the logger copied for a name and file, creating it if it was collected
+    private static Logger cached(Key key) {
+        Reference<? extends Logger> reference;
+        while((reference = collected.poll()) != null) {
+            CachedLogger cached = (CachedLogger) reference;
+            loggers.remove(cached.key, cached);
+        }
+        CachedLogger cached = loggers.get(key);
+        Logger logger = cached == null ? null : cached.get();
+        if(logger != null) return logger;
+        Logger[] created = new Logger[1];
+        loggers.compute(key, (k, v) -> {
+            Logger current = v == null ? null : v.get();
+            if(current != null) {
+                created[0] = current;
+                return v;
+            }
+            created[0] = new Logger(k.name, k.out);
+            return new CachedLogger(k, created[0]);
+        });
+        return created[0];
+    }
+
     /**
      * Returns an unconfigured logger, with no print streams.
      * @param out the output file to write to
@@ -105,4 +208,47 @@ public final class Loggers {
     public static ILogger noop() {
         return NO_OP;
     }
+
+    private static final class ThreadLogger {
+        private final Logger logger;
+        private final String threadName;
+        private final File out;
+
+        private ThreadLogger(Logger logger, String threadName, File out) {
+            this.logger = logger;
+            this.threadName = threadName;
+            this.out = out;
+        }
+    }
+
+    private static final class CachedLogger extends WeakReference<Logger> {
+        private final Key key;
+
+        private CachedLogger(Key key, Logger logger) {
+            super(logger, collected);
+            this.key = key;
+        }
+    }
+
+    private static final class Key {
+        private final String name;
+        private final File out;
+
+        private Key(String name, File out) {
+            this.name = name;
+            this.out = out;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) return true;
+            if(!(o instanceof Key key)) return false;
+            return Objects.equals(name, key.name) && Objects.equals(out, key.out);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hashCode(name) + Objects.hashCode(out);
+        }
+    }
 }
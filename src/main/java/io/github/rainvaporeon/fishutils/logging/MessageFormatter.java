@@ -0,0 +1,116 @@
+package io.github.rainvaporeon.fishutils.logging;
+
+import java.util.Arrays;
+
+/**
+ * Formats parameterized messages, in which every {@code {}} is
+ * replaced by the next argument.
+ * <p></p>
+ * Placeholders without an argument are kept as-is, and arguments without
+ * a placeholder are ignored, unless the last one is a {@link Throwable},
+ * which is then logged as the throwable of the message. Messages without
+ * any placeholder are logged along with their arguments as a list, as
+ * they were before parameterized messages were supported.
+ * @since 1.2.19
+ */
+final class MessageFormatter {
+
+    private static final String PLACEHOLDER = "{}";
+
+    private MessageFormatter() {}
+
+    static String format(Object first, Object second) {
+        return format(new Object[] { first, second });
+    }
+
+    static String format(Object first, Object second, Object third) {
+        return format(new Object[] { first, second, third });
+    }
+
+    static String format(String pattern, Object[] args) {
+        if(pattern == null || args == null) return legacy(pattern, args);
+        int index = pattern.indexOf(PLACEHOLDER);
+        if(index < 0) return legacy(pattern, args);
+        StringBuilder ret = new StringBuilder(pattern.length() + 16 * args.length);
+        int from = 0, arg = 0;
+        for(; index >= 0 && arg < args.length; index = pattern.indexOf(PLACEHOLDER, from)) {
+            ret.append(pattern, from, index).append(toString(args[arg++]));
+            from = index + PLACEHOLDER.length();
+        }
+        return ret.append(pattern, from, pattern.length()).toString();
+    }
+
+    /**
+     * Formats an array of messages, the first one being the pattern
+     * if it is a string containing a placeholder
+     */
+    static String format(Object[] messages) {
+        if(messages == null || messages.length == 0 || !(messages[0] instanceof String pattern) || !pattern.contains(PLACEHOLDER)) {
+            return Arrays.toString(messages);
+        }
+        return format(pattern, Arrays.copyOfRange(messages, 1, messages.length));
+    }
+
+    static Throwable throwable(Object[] messages) {
+        if(messages == null || messages.length < 2 || !(messages[0] instanceof String pattern)) return null;
+        return throwable(pattern, Arrays.copyOfRange(messages, 1, messages.length));
+    }
+
+    static Throwable throwable(Object first, Object second, Object third) {
+        if(!(third instanceof Throwable t) || !(first instanceof String pattern)) return null;
+        int index = pattern.indexOf(PLACEHOLDER);
+        return index >= 0 && pattern.indexOf(PLACEHOLDER, index + PLACEHOLDER.length()) < 0 ? t : null;
+    }
+
+    /**
+     * Joins the messages of the variable arity overloads, a null
+     * array being passed as a single null message
+     */
+    static Object[] concat(Object first, Object second, Object third, Object[] more) {
+        if(more == null) return new Object[] { first, second, third, null };
+        Object[] ret = new Object[3 + more.length];
+        ret[0] = first;
+        ret[1] = second;
+        ret[2] = third;
+        System.arraycopy(more, 0, ret, 3, more.length);
+        return ret;
+    }
+
+    /**
+     * Gets the trailing throwable of the arguments
+     * @return the throwable, or null if the last argument has a placeholder or is not a throwable
+     */
+    static Throwable throwable(String pattern, Object[] args) {
+        if(pattern == null || args == null || args.length == 0 || !(args[args.length - 1] instanceof Throwable t)) return null;
+        int placeholders = 0;
+        for(int index = pattern.indexOf(PLACEHOLDER); index >= 0 && placeholders < args.length; index = pattern.indexOf(PLACEHOLDER, index + PLACEHOLDER.length())) {
+            placeholders++;
+        }
+        return placeholders != 0 && placeholders < args.length ? t : null;
+    }
+
+    private static String toString(Object o) {
+        if(o instanceof Object[] array) return Arrays.deepToString(array);
+        if(o != null && o.getClass().isArray()) {
+            // primitive arrays
+            if(o instanceof int[] a) return Arrays.toString(a);
+            if(o instanceof long[] a) return Arrays.toString(a);
+            if(o instanceof double[] a) return Arrays.toString(a);
+            if(o instanceof float[] a) return Arrays.toString(a);
+            if(o instanceof byte[] a) return Arrays.toString(a);
+            if(o instanceof short[] a) return Arrays.toString(a);
+            if(o instanceof char[] a) return Arrays.toString(a);
+            if(o instanceof boolean[] a) return Arrays.toString(a);
+        }
+        return String.valueOf(o);
+    }
+
+    // The message followed by its arguments
+    private static String legacy(String message, Object[] args) {
+        if(args == null) return Arrays.toString(new Object[] { message, null });
+        Object[] all = new Object[args.length + 1];
+        all[0] = message;
+        System.arraycopy(args, 0, all, 1, args.length);
+        return Arrays.toString(all);
+    }
+}
@@ -0,0 +1,226 @@
+package io.github.rainvaporeon.fishutils.logging;
+
+import java.util.Arrays;
+
+/**
+ * A reusable buffer log records are encoded into as UTF-8, one per thread.
+ * <p></p>
+ * Records are encoded straight into the buffer, and written from it
+ * to every sink, so that logging allocates nothing once the buffer grew
+ * to the size of the records. Buffers that grew past {@link #MAX_RETAINED}
+ * are dropped once released, so that a single large record does not keep
+ * its memory around.
+ * @since 1.2.19
+ */
+final class RecordBuffer {
+
+    private static final int INITIAL_SIZE = 512;
+
+    private static final int MAX_RETAINED = 64 * 1024;
+
+    private static final ThreadLocal<RecordBuffer> LOCAL = ThreadLocal.withInitial(RecordBuffer::new);
+
+    private static final byte[] HEX = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f' };
+
+    private static final byte[] NULL = { 'n', 'u', 'l', 'l' };
+
+    private byte[] bytes = new byte[INITIAL_SIZE];
+    private int length;
+    private boolean inUse;
+
+    private RecordBuffer() {}
+
+    /**
+     * Gets the empty buffer of the current thread
+     * @return the buffer, to be released once written
+     */
+    static RecordBuffer acquire() {
+        RecordBuffer buffer = LOCAL.get();
+        // logging while logging, for example from a stream, gets a buffer of its own
+        if(buffer.inUse) buffer = new RecordBuffer();
+        buffer.inUse = true;
+        buffer.length = 0;
+        return buffer;
+    }
+
+    void release() {
+        inUse = false;
+        if(bytes.length > MAX_RETAINED) bytes = new byte[INITIAL_SIZE];
+    }
+
+    byte[] array() {
+        return bytes;
+    }
+
+    int length() {
+        return length;
+    }
+
+    /**
+     * Discards everything encoded past a length
+     */
+    void truncate(int length) {
+        this.length = length;
+    }
+
+    RecordBuffer append(byte b) {
+        ensure(1);
+        bytes[length++] = b;
+        return this;
+    }
+
+    RecordBuffer append(byte[] src) {
+        ensure(src.length);
+        System.arraycopy(src, 0, bytes, length, src.length);
+        length += src.length;
+        return this;
+    }
+
+    /**
+     * Appends a part of what was already encoded
+     * @param from the start of the part
+     * @param to the end of the part, exclusive
+     */
+    RecordBuffer copy(int from, int to) {
+        ensure(to - from);
+        System.arraycopy(bytes, from, bytes, length, to - from);
+        length += to - from;
+        return this;
+    }
+
+    /**
+     * Appends a part of what was already encoded, escaped as the content of a JSON string
+     * @param from the start of the part
+     * @param to the end of the part, exclusive
+     */
+    RecordBuffer copyJson(int from, int to) {
+        ensure((to - from) * 6);
+        byte[] bytes = this.bytes;
+        int pos = length;
+        for(int i = from; i < to; i++) {
+            byte b = bytes[i];
+            // bytes of multibyte characters are negative, and kept as-is
+            if(b >= 0x20 && b != '"' && b != '\\' || b < 0) {
+                bytes[pos++] = b;
+                continue;
+            }
+            bytes[pos++] = '\\';
+            switch (b) {
+                case '"', '\\' -> bytes[pos++] = b;
+                case '\n' -> bytes[pos++] = 'n';
+                case '\r' -> bytes[pos++] = 'r';
+                case '\t' -> bytes[pos++] = 't';
+                default -> {
+                    bytes[pos++] = 'u';
+                    bytes[pos++] = '0';
+                    bytes[pos++] = '0';
+                    bytes[pos++] = HEX[b >> 4];
+                    bytes[pos++] = HEX[b & 0xF];
+                }
+            }
+        }
+        length = pos;
+        return this;
+    }
+
+    /**
+     * Hashes a part of what was already encoded
+     * @param from the start of the part
+     * @param to the end of the part, exclusive
+     * @return the 64-bit FNV-1a hash
+     */
+    long hash(int from, int to) {
+        long hash = 0xcbf29ce484222325L;
+        for(int i = from; i < to; i++) {
+            hash = (hash ^ (bytes[i] & 0xFF)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    RecordBuffer appendUtf8(String s) {
+        if(s == null) return append(NULL);
+        int count = s.length();
+        // at most 3 bytes per char, as surrogate pairs take 4 bytes for 2 chars
+        ensure(count * 3);
+        byte[] bytes = this.bytes;
+        int pos = length;
+        for(int i = 0; i < count; i++) {
+            char c = s.charAt(i);
+            if(c < 0x80) {
+                bytes[pos++] = (byte) c;
+            } else {
+                pos = encode(s, i, c, pos);
+                if(Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(s.charAt(i + 1))) i++;
+            }
+        }
+        length = pos;
+        return this;
+    }
+
+    /**
+     * Appends a string escaped as the content of a JSON string
+     */
+    RecordBuffer appendJson(String s) {
+        if(s == null) return append(NULL);
+        int count = s.length();
+        // at most 6 bytes per char, as in \u001f
+        ensure(count * 6);
+        byte[] bytes = this.bytes;
+        int pos = length;
+        for(int i = 0; i < count; i++) {
+            char c = s.charAt(i);
+            if(c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                bytes[pos++] = (byte) c;
+                continue;
+            }
+            switch (c) {
+                case '"', '\\' -> { bytes[pos++] = '\\'; bytes[pos++] = (byte) c; }
+                case '\n' -> { bytes[pos++] = '\\'; bytes[pos++] = 'n'; }
+                case '\r' -> { bytes[pos++] = '\\'; bytes[pos++] = 'r'; }
+                case '\t' -> { bytes[pos++] = '\\'; bytes[pos++] = 't'; }
+                default -> {
+                    if(c < 0x20) {
+                        bytes[pos++] = '\\';
+                        bytes[pos++] = 'u';
+                        bytes[pos++] = '0';
+                        bytes[pos++] = '0';
+                        bytes[pos++] = HEX[c >> 4];
+                        bytes[pos++] = HEX[c & 0xF];
+                    } else {
+                        pos = encode(s, i, c, pos);
+                        if(Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(s.charAt(i + 1))) i++;
+                    }
+                }
+            }
+        }
+        length = pos;
+        return this;
+    }
+
+    // encodes a char of at least 0x80, lone surrogates becoming '?'
+    private int encode(String s, int i, char c, int pos) {
+        byte[] bytes = this.bytes;
+        if(c < 0x800) {
+            bytes[pos++] = (byte) (0xC0 | c >> 6);
+            bytes[pos++] = (byte) (0x80 | c & 0x3F);
+        } else if(!Character.isSurrogate(c)) {
+            bytes[pos++] = (byte) (0xE0 | c >> 12);
+            bytes[pos++] = (byte) (0x80 | c >> 6 & 0x3F);
+            bytes[pos++] = (byte) (0x80 | c & 0x3F);
+        } else if(Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+            int cp = Character.toCodePoint(c, s.charAt(i + 1));
+            bytes[pos++] = (byte) (0xF0 | cp >> 18);
+            bytes[pos++] = (byte) (0x80 | cp >> 12 & 0x3F);
+            bytes[pos++] = (byte) (0x80 | cp >> 6 & 0x3F);
+            bytes[pos++] = (byte) (0x80 | cp & 0x3F);
+        } else {
+            bytes[pos++] = '?';
+        }
+        return pos;
+    }
+
+    private void ensure(int extra) {
+        if(length + extra <= bytes.length) return;
+        bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+    }
+}
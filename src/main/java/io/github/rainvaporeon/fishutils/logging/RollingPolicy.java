@@ -0,0 +1,103 @@
+package io.github.rainvaporeon.fishutils.logging;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Objects;
+
+/**
+ * When a log file is rolled over, and how many archives of it are kept.
+ * <p></p>
+ * Once the file would exceed its maximum size, or once the current period
+ * ended, the file is moved aside and a new one is started. Archives are
+ * compressed with gzip in the background, and the oldest are deleted once
+ * there are more than the maximum amount of archives.
+ * <p></p>
+ * Sizes are checked before every batch of lines is written, so a file only
+ * exceeds its maximum size if a single batch does.
+ * <p></p>
+ * Periods are aligned to the local midnight of the epoch, so that a period
+ * of one day rolls over at midnight and a period of one hour at the top of
+ * the hour.
+ * @see Loggers#setRollingPolicy(java.io.File, RollingPolicy)
+ * @since 1.2.19
+ */
+public final class RollingPolicy {
+
+    private final long maxSize;
+    private final Duration period;
+    private final int maxArchives;
+
+    /**
+     * Creates a rolling policy
+     * @param maxSize the maximum size of the file in bytes, or 0 for no limit
+     * @param period the period after which the file is rolled over, or null for none
+     * @param maxArchives the maximum amount of archives kept
+     */
+    public RollingPolicy(long maxSize, Duration period, int maxArchives) {
+        if(maxSize < 0) throw new IllegalArgumentException("negative size");
+        if(period != null && (period.isNegative() || period.isZero())) throw new IllegalArgumentException("period must be positive");
+        if(maxArchives < 0) throw new IllegalArgumentException("negative archive count");
+        this.maxSize = maxSize;
+        this.period = period;
+        this.maxArchives = maxArchives;
+    }
+
+    public static RollingPolicy bySize(long maxSize, int maxArchives) {
+        return new RollingPolicy(maxSize, null, maxArchives);
+    }
+
+    public static RollingPolicy byTime(Duration period, int maxArchives) {
+        return new RollingPolicy(0, Objects.requireNonNull(period), maxArchives);
+    }
+
+    /**
+     * Gets the maximum size of the file
+     * @return the size in bytes, or 0 for no limit
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Gets the period after which the file is rolled over
+     * @return the period, or null for none
+     */
+    public Duration getPeriod() {
+        return period;
+    }
+
+    public int getMaxArchives() {
+        return maxArchives;
+    }
+
+    /**
+     * Checks whether appending to a file of the given size needs a rollover first
+     * @param size the current size
+     * @param appended the amount of bytes to append
+     */
+    boolean exceeds(long size, long appended) {
+        return maxSize != 0 && size != 0 && size + appended > maxSize;
+    }
+
+    /**
+     * Gets the time of the next rollover
+     * @param now the current time, in milliseconds
+     * @return the time in milliseconds, or {@link Long#MAX_VALUE} if rolled over by size only
+     */
+    long nextRollover(long now) {
+        if(period == null) return Long.MAX_VALUE;
+        long length = period.toMillis();
+        long offset = ZoneId.systemDefault().getRules().getOffset(Instant.ofEpochMilli(now)).getTotalSeconds() * 1000L;
+        return Math.floorDiv(now + offset, length) * length + length - offset;
+    }
+
+    @Override
+    public String toString() {
+        return "RollingPolicy{" +
+                "maxSize=" + maxSize +
+                ", period=" + period +
+                ", maxArchives=" + maxArchives +
+                '}';
+    }
+}
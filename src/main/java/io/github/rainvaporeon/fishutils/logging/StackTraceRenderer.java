@@ -0,0 +1,63 @@
+package io.github.rainvaporeon.fishutils.logging;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Renders stack traces into a record buffer, as printed by
+ * {@link Throwable#printStackTrace()}, with causes, suppressed
+ * throwables and circular references.
+ * <p></p>
+ * Lines end with {@code \n} regardless of the platform, as do
+ * the lines of log files.
+ * @since 1.2.19
+ */
+final class StackTraceRenderer {
+
+    private static final String CAUSE_CAPTION = "Caused by: ";
+    private static final String SUPPRESSED_CAPTION = "Suppressed: ";
+
+    private StackTraceRenderer() {}
+
+    static void render(Throwable t, RecordBuffer record) {
+        Set<Throwable> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        seen.add(t);
+        StackTraceElement[] trace = t.getStackTrace();
+        record.appendUtf8(t.toString()).append((byte) '\n');
+        for(StackTraceElement element : trace) {
+            record.appendUtf8("\tat ").appendUtf8(element.toString()).append((byte) '\n');
+        }
+        for(Throwable suppressed : t.getSuppressed()) {
+            enclosed(suppressed, record, trace, SUPPRESSED_CAPTION, "\t", seen);
+        }
+        Throwable cause = t.getCause();
+        if(cause != null) enclosed(cause, record, trace, CAUSE_CAPTION, "", seen);
+    }
+
+    // renders a throwable within another one, omitting the frames they have in common
+    private static void enclosed(Throwable t, RecordBuffer record, StackTraceElement[] enclosing, String caption, String prefix, Set<Throwable> seen) {
+        if(!seen.add(t)) {
+            record.appendUtf8(prefix).appendUtf8(caption).appendUtf8("[CIRCULAR REFERENCE: ").appendUtf8(t.toString()).appendUtf8("]\n");
+            return;
+        }
+        StackTraceElement[] trace = t.getStackTrace();
+        int m = trace.length - 1, n = enclosing.length - 1;
+        while(m >= 0 && n >= 0 && trace[m].equals(enclosing[n])) {
+            m--;
+            n--;
+        }
+        int inCommon = trace.length - 1 - m;
+
+        record.appendUtf8(prefix).appendUtf8(caption).appendUtf8(t.toString()).append((byte) '\n');
+        for(int i = 0; i <= m; i++) {
+            record.appendUtf8(prefix).appendUtf8("\tat ").appendUtf8(trace[i].toString()).append((byte) '\n');
+        }
+        if(inCommon != 0) record.appendUtf8(prefix).appendUtf8("\t... ").appendUtf8(Integer.toString(inCommon)).appendUtf8(" more\n");
+        for(Throwable suppressed : t.getSuppressed()) {
+            enclosed(suppressed, record, trace, SUPPRESSED_CAPTION, prefix + "\t", seen);
+        }
+        Throwable cause = t.getCause();
+        if(cause != null) enclosed(cause, record, trace, CAUSE_CAPTION, prefix, seen);
+    }
+}
@@ -0,0 +1,64 @@
+package io.github.rainvaporeon.fishutils.logging;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Remembers the stack traces a logger wrote recently, so that repeated
+ * ones are logged as a reference to the first one.
+ * <p></p>
+ * Traces are told apart by the hash of their rendered text. A trace is
+ * written in full again once the window elapsed since it was last written
+ * in full, so that the reference stays close to what it refers to. At most
+ * {@link #MAX_TRACES} traces are remembered, beyond which all are forgotten.
+ * @since 1.2.19
+ */
+final class TraceDeduplicator {
+
+    private static final int MAX_TRACES = 256;
+
+    private final long windowNanos;
+
+    private final Map<Long, Trace> traces = new ConcurrentHashMap<>();
+
+    private final AtomicInteger traceCount = new AtomicInteger();
+
+    TraceDeduplicator(long windowNanos) {
+        this.windowNanos = windowNanos;
+    }
+
+    /**
+     * Records an occurrence of a trace
+     * @param hash the hash of the rendered trace
+     * @return the trace, numbered the first time it was written in full
+     */
+    Trace record(long hash) {
+        long now = System.nanoTime();
+        if(traces.size() >= MAX_TRACES && !traces.containsKey(hash)) traces.clear();
+        return traces.compute(hash, (k, trace) -> trace != null && now - trace.since < windowNanos ? trace : new Trace(traceCount.incrementAndGet(), now));
+    }
+
+    static final class Trace {
+        private final int number;
+        private final long since;
+        private final AtomicInteger occurrences = new AtomicInteger();
+
+        private Trace(int number, long since) {
+            this.number = number;
+            this.since = since;
+        }
+
+        int number() {
+            return number;
+        }
+
+        /**
+         * Counts an occurrence of this trace
+         * @return the amount of times it was repeated before, 0 the first time
+         */
+        int repeat() {
+            return occurrences.getAndIncrement();
+        }
+    }
+}
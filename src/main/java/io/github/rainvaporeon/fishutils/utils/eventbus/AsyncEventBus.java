@@ -0,0 +1,277 @@
+package io.github.rainvaporeon.fishutils.utils.eventbus;
+
+import io.github.rainvaporeon.fishutils.utils.eventbus.events.Event;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An event bus that delivers events asynchronously.
+ * <p></p>
+ * Each subscriber receives the event as a separate task, so a slow
+ * subscriber does not block the publishing thread nor other subscribers.
+ * The subscribing methods of a single subscriber are still invoked
+ * sequentially in order of their priority.
+ * <p></p>
+ * Buses hooked to this bus receive the event as well, asynchronously
+ * if they are also an {@link AsyncEventBus}, otherwise as a task on
+ * this bus' executor.
+ * @since 1.2.19
+ */
+public class AsyncEventBus extends EventBus {
+
+    private static final AtomicInteger dispatcherCount = new AtomicInteger();
+
+    /**
+     * The amount of events delivered as a single task when firing a batch
+     */
+    private static final int BATCH_CHUNK = 256;
+
+    /**
+     * The executor running the deliveries
+     */
+    protected final Executor executor;
+
+    /**
+     * The delivery mode of this bus
+     */
+    private final Mode mode;
+
+    /**
+     * Creates an asynchronous event bus
+     * @param executor the executor to deliver events with
+     * @param processDuplicates whether this bus should be able to
+     *                     receive the same event multiple times
+     * @see EventBus#EventBus(boolean)
+     */
+    public AsyncEventBus(Executor executor, boolean processDuplicates) {
+        this(Objects.requireNonNull(executor), Mode.EXECUTOR, processDuplicates);
+    }
+
+    public AsyncEventBus(Executor executor) {
+        this(executor, false);
+    }
+
+    private AsyncEventBus(Executor executor, Mode mode, boolean processDuplicates) {
+        super(processDuplicates);
+        this.executor = executor;
+        this.mode = mode;
+    }
+
+    /**
+     * Creates an asynchronous event bus delivering every event on new virtual threads
+     * @param processDuplicates whether this bus should be able to
+     *                     receive the same event multiple times
+     * @return the bus
+     */
+    public static AsyncEventBus virtual(boolean processDuplicates) {
+        ThreadFactory factory = Thread.ofVirtual().name("EventBus-virtual-", 0).factory();
+        return new AsyncEventBus(Executors.newThreadPerTaskExecutor(factory), Mode.VIRTUAL_THREAD, processDuplicates);
+    }
+
+    public static AsyncEventBus virtual() {
+        return virtual(false);
+    }
+
+    /**
+     * Creates an asynchronous event bus with its own pool of dispatcher threads
+     * @param threads the amount of dispatcher threads
+     * @param processDuplicates whether this bus should be able to
+     *                     receive the same event multiple times
+     * @return the bus
+     * @apiNote the dispatcher threads are daemon threads, and are
+     * stopped once {@link AsyncEventBus#shutdown()} is called.
+     */
+    public static AsyncEventBus dispatcher(int threads, boolean processDuplicates) {
+        int id = dispatcherCount.getAndIncrement();
+        ThreadFactory factory = Thread.ofPlatform().daemon().name("EventBus-dispatcher-" + id + "-", 0).factory();
+        return new AsyncEventBus(Executors.newFixedThreadPool(threads, factory), Mode.DISPATCHER_POOL, processDuplicates);
+    }
+
+    public static AsyncEventBus dispatcher(int threads) {
+        return dispatcher(threads, false);
+    }
+
+    /**
+     * Fires the event asynchronously, discarding the completion
+     * @param event the event
+     * @apiNote errors re-thrown by the error handler are only visible
+     * through {@link AsyncEventBus#fireAsync(Event)}.
+     */
+    @Override
+    public void fire(Event event) {
+        fireAsync(event);
+    }
+
+    /**
+     * Fires the event asynchronously
+     * @param event the event
+     * @return a future that completes once every subscriber and every
+     * bus below this bus has handled the event, or completes exceptionally
+     * if the error handler threw during any delivery.
+     */
+    public CompletableFuture<Void> fireAsync(Event event) {
+        if(!accept(event)) return CompletableFuture.completedFuture(null);
+
+        List<CompletableFuture<?>> futures = new ArrayList<>(registry.size() + inheritances.size());
+        for(Object o : registry) {
+            futures.add(CompletableFuture.runAsync(() -> deliverTo(o, event), executor));
+        }
+        // 1.2.19: Synchronous buses are walked through the plan, so that the
+        // asynchronous buses hooked below them are awaited as well
+        PropagationPlan plan = plan();
+        for(int i = 0; i < plan.buses.length; i = plan.ends[i]) {
+            if(plan.buses[i] instanceof AsyncEventBus async) {
+                futures.add(async.fireAsync(event));
+            } else {
+                int child = i;
+                futures.add(CompletableFuture.supplyAsync(() -> propagateAsync(plan, child, event), executor).thenCompose(f -> f));
+            }
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Fires the event to a synchronous bus of a plan and every bus below it
+     * @param plan the plan of this bus
+     * @param from the index of the bus
+     * @param event the event
+     * @return a future that completes once the asynchronous buses below it have handled the event
+     */
+    private static CompletableFuture<Void> propagateAsync(PropagationPlan plan, int from, Event event) {
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+        for(int i = from, end = plan.ends[from]; i < end; ) {
+            EventBus bus = plan.buses[i];
+            if(!plan.inline[i]) {
+                if(bus instanceof AsyncEventBus async) futures.add(async.fireAsync(event));
+                else bus.fire(event);
+                i++;
+            } else if(bus.accept(event)) {
+                bus.dispatch(event);
+                i++;
+            } else {
+                // rejected as a duplicate, so are its children
+                i = plan.ends[i];
+            }
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Fires a batch of events asynchronously, discarding the completion
+     * @param events the events
+     * @see AsyncEventBus#fireAllAsync(Collection)
+     */
+    @Override
+    public void fireAll(Collection<? extends Event> events) {
+        fireAllAsync(events);
+    }
+
+    /**
+     * Fires a batch of independent events asynchronously.
+     * <p></p>
+     * The batch is split into chunks of {@value BATCH_CHUNK} events that
+     * are delivered in parallel, while the events of a chunk are delivered
+     * in order. Failures are passed to the error handler once per chunk.
+     * @param events the events
+     * @return a future that completes once every chunk has been delivered
+     * and every bus below this bus has handled the batch.
+     * @see EventBus#fireAll(Collection)
+     */
+    public CompletableFuture<Void> fireAllAsync(Collection<? extends Event> events) {
+        List<Event> accepted = signAll(events);
+        if(accepted.isEmpty()) return CompletableFuture.completedFuture(null);
+
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+        for(int i = 0; i < accepted.size(); i += BATCH_CHUNK) {
+            List<Event> chunk = accepted.subList(i, Math.min(i + BATCH_CHUNK, accepted.size()));
+            futures.add(CompletableFuture.runAsync(() -> deliverAll(chunk), executor));
+        }
+        PropagationPlan plan = plan();
+        for(int i = 0; i < plan.buses.length; i = plan.ends[i]) {
+            if(plan.buses[i] instanceof AsyncEventBus async) {
+                futures.add(async.fireAllAsync(accepted));
+            } else {
+                int child = i;
+                futures.add(CompletableFuture.supplyAsync(() -> propagateAllAsync(plan, child, accepted), executor).thenCompose(f -> f));
+            }
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Fires a batch to a synchronous bus of a plan and every bus below it
+     * @param plan the plan of this bus
+     * @param from the index of the bus
+     * @param events the events
+     * @return a future that completes once the asynchronous buses below it have handled the batch
+     */
+    private static CompletableFuture<Void> propagateAllAsync(PropagationPlan plan, int from, List<Event> events) {
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+        int end = plan.ends[from];
+        // the events each bus accepted, handed to its children
+        List<List<Event>> received = new ArrayList<>(Collections.nCopies(end - from, null));
+        for(int i = from; i < end; ) {
+            EventBus bus = plan.buses[i];
+            List<Event> input = i == from ? events : received.get(plan.parents[i] - from);
+            if(!plan.inline[i]) {
+                if(bus instanceof AsyncEventBus async) futures.add(async.fireAllAsync(input));
+                else bus.fireAll(input);
+                i++;
+                continue;
+            }
+            List<Event> accepted = bus.signAll(input);
+            if(accepted.isEmpty()) {
+                i = plan.ends[i];
+                continue;
+            }
+            bus.deliverAll(accepted);
+            received.set(i++ - from, accepted);
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Gets the delivery mode
+     * @return the mode
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Stops the executor if it was created by this bus. Events
+     * already fired are still delivered.
+     * @apiNote this does nothing for buses created with a caller-supplied executor.
+     */
+    public void shutdown() {
+        if(mode != Mode.EXECUTOR && executor instanceof ExecutorService service) service.shutdown();
+    }
+
+    /**
+     * How the bus delivers events
+     */
+    public enum Mode {
+        /**
+         * Delivered on an executor supplied by the caller
+         */
+        EXECUTOR,
+        /**
+         * Delivered on a new virtual thread per delivery
+         */
+        VIRTUAL_THREAD,
+        /**
+         * Delivered on a fixed pool of dispatcher threads owned by the bus
+         */
+        DISPATCHER_POOL
+    }
+}
@@ -1,12 +1,6 @@
 package io.github.rainvaporeon.fishutils.utils.eventbus;
 
-import io.github.rainvaporeon.fishutils.action.ActionResult;
 import io.github.rainvaporeon.fishutils.utils.eventbus.events.Event;
-import io.github.rainvaporeon.fishutils.utils.eventbus.events.EventBusAccessor;
-import io.github.rainvaporeon.fishutils.utils.eventbus.events.EventBusSubscriber;
-
-import java.lang.reflect.Method;
-import java.util.Arrays;
 
 /**
  * An event bus that is capable of firing events that can be canceled.
@@ -14,93 +8,83 @@ import java.util.Arrays;
  * This class behaves nearly identical to the default implementation, but
  * with {@link CancellableEventBus#fireCancellable(Event)} to fire events
  * that listeners can return {@code true} to cancel it half-way.
+ * <p></p>
+ * As events are delivered in order of priority across all subscribers,
+ * a handler may only cancel the event for handlers of a lower priority.
  * @since 1.2.19
  */
 public class CancellableEventBus extends EventBus {
 
+    public CancellableEventBus(boolean processDuplicates) {
+        super(processDuplicates);
+    }
+
+    public CancellableEventBus() {
+        super();
+    }
+
     public boolean fireCancellable(Event event) {
-        if(!this.processDuplicates) {
-            EventBusAccessor accessor = Secret.getAccessor();
-            if(accessor.signed(event, identifier)) return false;
-            accessor.sign(event, identifier);
-        }
+        if(!accept(event)) return false;
+        if(dispatchCancellable(event)) return true;
 
-        for (Object o : subscribers) {
-            if (fireCancellable(o, event)) return true;
-        }
-        for (EventBus bus : inheritances) {
-            if (bus instanceof CancellableEventBus ceb) {
-                if (ceb.fireCancellable(event)) return true;
+        // 1.2.19: Walks the flattened plan instead of recursing into every child,
+        // buses below a bus that cannot cancel are fired as usual
+        PropagationPlan plan = plan();
+        EventBus[] buses = plan.buses;
+        for(int i = 0; i < buses.length; ) {
+            EventBus bus = buses[i];
+            if(!plan.inline[i]) {
+                if(plan.cancellable[i]) {
+                    if(((CancellableEventBus) bus).fireCancellable(event)) return true;
+                } else {
+                    bus.fire(event);
+                }
+                i++;
+            } else if(!bus.accept(event)) {
+                // rejected as a duplicate, so are its children
+                i = plan.ends[i];
+            } else if(plan.cancellable[i]) {
+                if(((CancellableEventBus) bus).dispatchCancellable(event)) return true;
+                i++;
             } else {
-                bus.fire(event);
+                bus.dispatch(event);
+                i++;
             }
         }
         return false;
     }
 
-    protected boolean fireCancellable(Object o, Event event) {
-        EventBusSubscriber a; Class<?> c;
-        Method[] methods;
-        Object invocationTarget;
-        if(o instanceof Class<?> cls) {
-            invocationTarget = null;
-            methods = cls.getMethods();
-        } else {
-            invocationTarget = o;
-            methods = o.getClass().getDeclaredMethods();
+    /**
+     * Delivers an event to the subscribers of this bus only
+     * @param event the event, already signed
+     * @return true if a handler canceled the event
+     */
+    boolean dispatchCancellable(Event event) {
+        for (ResolutionCache.Delivery delivery : resolve(event.getClass())) {
+            Object target = delivery.target();
+            if (delivery.collected(target)) continue;
+            SubscriberTable.Handler handler = delivery.handler;
+            Object result = deliver(target, handler, event);
+            if (handler.cancels && result instanceof Boolean b && b) return true;
         }
+        return false;
+    }
 
-        Arrays.sort(methods, (left, right) -> {
-            EventBusSubscriber l = left.getAnnotation(EventBusSubscriber.class);
-            EventBusSubscriber r = right.getAnnotation(EventBusSubscriber.class);
-            if(l == null && r == null) return 0;
-            if(l == null) return -1;
-            if(r == null) return 1;
-            // the lower the priority, the higher the ordinal.
-            return r.priority().ordinal() - l.priority().ordinal();
-        });
-
-        for(Method method : methods) {
-            condition:
-            if((a = method.getAnnotation(EventBusSubscriber.class)) != null &&
-                    method.getParameterCount() == 1 &&
-                    method.getParameterTypes()[0].isAssignableFrom((c = event.getClass()))) {
-                method.setAccessible(true);
-                if(a.value().length == 0 && a.only().length == 0) {
-                    boolean boo = ActionResult.run(() -> method.invoke(invocationTarget, event))
-                            .onFail(t -> {
-                                if (t instanceof ReflectiveOperationException rf) throw new InternalError("Failed to invoke " + method + ": ", rf);
-                                if (this.errorHandler != null) this.errorHandler.accept(t);
-                            })
-                            .map(obj -> obj instanceof Boolean && (boolean) obj).getReturnValue();
-                    if (boo) return true;
-                } else {
-                    for(Class<?> clazz : a.only()) {
-                        if(clazz == c) {
-                            boolean boo = ActionResult.run(() -> method.invoke(invocationTarget, event))
-                                    .onFail(t -> {
-                                        if (t instanceof ReflectiveOperationException rf) throw new InternalError("Failed to invoke " + method + ": ", rf);
-                                        if (this.errorHandler != null) this.errorHandler.accept(t);
-                                    })
-                                    .map(obj -> obj instanceof Boolean && (boolean) obj).getReturnValue();
-                            if (boo) return true;
-                            break condition;
-                        }
-                    }
-                    for(Class<?> clazz : a.value()) {
-                        if(clazz.isAssignableFrom(c)) {
-                            boolean boo = ActionResult.run(() -> method.invoke(invocationTarget, event))
-                                    .onFail(t -> {
-                                        if (t instanceof ReflectiveOperationException rf) throw new InternalError("Failed to invoke " + method + ": ", rf);
-                                        if (this.errorHandler != null) this.errorHandler.accept(t);
-                                    })
-                                    .map(obj -> obj instanceof Boolean && (boolean) obj).getReturnValue();
-                            if (boo) return true;
-                            break condition;
-                        }
-                    }
-                }
-            }
+    /**
+     * Delivers an event to a single subscriber until a handler cancels it
+     * @param o the subscriber
+     * @param event the event
+     * @return true if a handler canceled the event
+     * @deprecated events are delivered in order of priority across every
+     * subscriber of the bus rather than one subscriber at a time, so the bus
+     * no longer calls this method and overriding it has no effect.
+     */
+    @Deprecated(since = "1.2.19")
+    protected boolean fireCancellable(Object o, Event event) {
+        Object invocationTarget = o instanceof Class<?> ? null : o;
+        for(SubscriberTable.Handler handler : SubscriberTable.of(o).handlersFor(event.getClass())) {
+            Object result = deliver(invocationTarget, handler, event);
+            if (handler.cancels && result instanceof Boolean b && b) return true;
         }
         return false;
     }
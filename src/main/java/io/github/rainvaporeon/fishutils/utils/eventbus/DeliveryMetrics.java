@@ -0,0 +1,94 @@
+package io.github.rainvaporeon.fishutils.utils.eventbus;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Per-handler delivery counters of an event bus.
+ * @since 1.2.19
+ */
+final class DeliveryMetrics {
+
+    private final Map<SubscriberTable.Handler, Counters> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Latency budget in nanoseconds, or {@link Long#MAX_VALUE} if unset
+     */
+    private final long threshold;
+
+    /**
+     * Called with the method and its latency whenever the budget is exceeded
+     */
+    private final BiConsumer<Method, Duration> slowHandler;
+
+    DeliveryMetrics(long threshold, BiConsumer<Method, Duration> slowHandler) {
+        this.threshold = threshold;
+        this.slowHandler = slowHandler;
+    }
+
+    /**
+     * Records a single invocation
+     * @param handler the handler invoked
+     * @param nanos the time it took
+     * @param failed whether the handler threw
+     */
+    void record(SubscriberTable.Handler handler, long nanos, boolean failed) {
+        Counters counters = this.counters.get(handler);
+        if(counters == null) counters = this.counters.computeIfAbsent(handler, Counters::new);
+        counters.record(nanos, failed);
+        if(nanos > threshold && slowHandler != null) slowHandler.accept(handler.method(), Duration.ofNanos(nanos));
+    }
+
+    /**
+     * Creates a copy with the new budget, keeping the counters
+     */
+    DeliveryMetrics withThreshold(long threshold, BiConsumer<Method, Duration> slowHandler) {
+        DeliveryMetrics ret = new DeliveryMetrics(threshold, slowHandler);
+        ret.counters.putAll(this.counters);
+        return ret;
+    }
+
+    Map<Method, HandlerStats> snapshot() {
+        Map<Method, HandlerStats> ret = new LinkedHashMap<>();
+        // a method may back two handlers if its class was subscribed both as an instance and as a class
+        counters.forEach((handler, counters) -> ret.merge(handler.method(), counters.snapshot(), HandlerStats::combine));
+        return ret;
+    }
+
+    private static final class Counters {
+        private static final int BUCKETS = Long.SIZE;
+
+        private final Method method;
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        private Counters(SubscriberTable.Handler handler) {
+            this.method = handler.method();
+        }
+
+        private void record(long nanos, boolean failed) {
+            invocations.increment();
+            if(failed) errors.increment();
+            totalNanos.add(nanos);
+            if(nanos > maxNanos.get()) maxNanos.accumulateAndGet(nanos, Math::max);
+            // index of the highest bit, 0 for no measurable time
+            histogram.incrementAndGet(nanos <= 0 ? 0 : BUCKETS - 1 - Long.numberOfLeadingZeros(nanos));
+        }
+
+        private HandlerStats snapshot() {
+            long[] histogram = new long[BUCKETS];
+            for(int i = 0; i < BUCKETS; i++) histogram[i] = this.histogram.get(i);
+            return new HandlerStats(method, invocations.sum(), errors.sum(), totalNanos.sum(), maxNanos.get(), histogram);
+        }
+    }
+}
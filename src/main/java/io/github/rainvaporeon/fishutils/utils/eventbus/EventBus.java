@@ -1,15 +1,16 @@
 package io.github.rainvaporeon.fishutils.utils.eventbus;
 
-import io.github.rainvaporeon.fishutils.action.ActionResult;
 import io.github.rainvaporeon.fishutils.utils.eventbus.events.Event;
-import io.github.rainvaporeon.fishutils.utils.eventbus.events.EventBusAccessor;
 import io.github.rainvaporeon.fishutils.utils.eventbus.events.EventBusSubscriber;
 
 import java.lang.reflect.Method;
+import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * An event bus which fires events to listeners.
@@ -22,6 +23,9 @@ import java.util.function.Consumer;
  * should be annotated with {@link io.github.rainvaporeon.fishutils.utils.eventbus.events.EventBusSubscriber}
  * in order for the bus to acknowledge the class and fire
  * appropriate event.
+ * <p></p>
+ * Handlers receive events in order of their priority across all
+ * subscribers, handlers of the same priority in order of subscription.
  */
 public class EventBus {
 
@@ -31,21 +35,74 @@ public class EventBus {
     private static final Set<UUID> registeredInstances = new CopyOnWriteArraySet<>();
     protected final UUID identifier;
 
+    /**
+     * The next signature to hand out to a new bus
+     */
+    private static final AtomicInteger nextSignature = new AtomicInteger();
+
+    /**
+     * A compact identifier written to the events this bus received,
+     * signatures are handed out incrementally so that they can be
+     * stored as a bitset.
+     * <p></p>
+     * Signatures are never reused, as events may still carry the
+     * signature of a bus that is gone. Events only store the blocks
+     * of signatures of the buses they reached, so they stay small
+     * however many buses were created.
+     */
+    protected final int signature;
+
+    /**
+     * Classes that are interested in events fired by this event bus
+     */
+    // 1.2.19: Replaced CopyOnWriteArrayList with registry
+    final SubscriberRegistry registry = new SubscriberRegistry();
+
     /**
      * Classes that are interested in events fired by this event bus
+     * @deprecated a view over the subscribers, kept for subclasses. Adding
+     * and removing subscribers through it subscribes and unsubscribes them,
+     * other changes are unsupported.
+     * Use {@link EventBus#subscribe(Object)} and {@link EventBus#unsubscribe(Object)} instead.
+     */
+    @Deprecated(since = "1.2.19")
+    protected final List<Object> subscribers = new SubscriberList();
+
+    /**
+     * Handlers resolved per event class, patched whenever the subscribers change
      */
-    protected final List<Object> subscribers = new CopyOnWriteArrayList<>();
+    private final ResolutionCache resolutionCache = new ResolutionCache(registry);
 
     /**
      * Buses that this bus is listening to
      */
     protected final Set<EventBus> inheritances = new CopyOnWriteArraySet<>();
 
+    /**
+     * Guards changes to the inheritances of every bus
+     */
+    private static final Object graphLock = new Object();
+
+    /**
+     * The buses events propagate to, rebuilt once the inheritances change
+     */
+    private volatile PropagationPlan plan = PropagationPlan.EMPTY;
+
     /**
      * The error handler to call when a method invocation fails
      */
     protected Consumer<Throwable> errorHandler;
 
+    /**
+     * The delivery metrics, or null if disabled
+     */
+    private volatile DeliveryMetrics metrics;
+
+    /**
+     * The latest events received, or null if disabled
+     */
+    private volatile EventHistory history;
+
     /**
      * Whether the bus should be able to receive the same event
      * multiple times. If this is {@code false}, this bus will
@@ -70,6 +127,8 @@ public class EventBus {
      * is set to false (default) and if the two events have identical identity.
      */
     public EventBus(boolean processDuplicates) {
+        int signature = nextSignature.getAndIncrement();
+        if(signature < 0) throw new IllegalStateException("out of event bus signatures");
         UUID identifier;
         // Keeps fetching until there are no duplicating identifiers.
 
@@ -77,6 +136,7 @@ public class EventBus {
         while(registeredInstances.contains((identifier = UUID.randomUUID())));
         registeredInstances.add(identifier);
         this.identifier = identifier;
+        this.signature = signature;
         this.processDuplicates = processDuplicates;
         this.errorHandler = t -> {
             throw (t instanceof RuntimeException ? (RuntimeException) t : new RuntimeException(t));
@@ -95,21 +155,171 @@ public class EventBus {
         this.errorHandler = errorHandler;
     }
 
+    /**
+     * Enables or disables recording delivery metrics for every
+     * subscribing method of this bus
+     * @param enabled whether to record metrics
+     * @apiNote disabling discards everything recorded so far.
+     * @see EventBus#getHandlerStats()
+     * @since 1.2.19
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        if(!enabled) this.metrics = null;
+        else if(this.metrics == null) this.metrics = new DeliveryMetrics(Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Sets a latency budget for subscribing methods, enabling metrics if necessary
+     * @param budget the maximum time a single invocation should take
+     * @param callback called with the method and the time it took whenever an
+     *                 invocation exceeds the budget, on the thread that delivered the event
+     * @since 1.2.19
+     */
+    public void setSlowHandlerThreshold(Duration budget, BiConsumer<Method, Duration> callback) {
+        DeliveryMetrics metrics = this.metrics;
+        long threshold = budget.toNanos();
+        this.metrics = metrics == null ? new DeliveryMetrics(threshold, callback) : metrics.withThreshold(threshold, callback);
+    }
+
+    /**
+     * Gets a snapshot of the delivery metrics
+     * @return the stats of every subscribing method invoked since metrics
+     * were enabled, or an empty map if metrics are disabled
+     * @since 1.2.19
+     */
+    public Map<Method, HandlerStats> getHandlerStats() {
+        DeliveryMetrics metrics = this.metrics;
+        return metrics == null ? Map.of() : metrics.snapshot();
+    }
+
+    /**
+     * Keeps the latest events this bus receives, so that they can be
+     * replayed to subscribers registered later on.
+     * @param perType the maximum amount of events kept per concrete event class
+     * @param maxTypes the maximum amount of event classes kept, once exceeded the
+     *                 class that received an event the longest ago is dropped
+     * @apiNote the history keeps the events strongly reachable; enabling
+     * the history again discards everything kept so far.
+     * @see EventBus#subscribe(Object, boolean)
+     * @since 1.2.19
+     */
+    public void enableHistory(int perType, int maxTypes) {
+        this.history = new EventHistory(perType, maxTypes);
+    }
+
+    public void enableHistory(int perType) {
+        enableHistory(perType, 256);
+    }
+
+    /**
+     * Stops keeping events, discarding the history
+     * @since 1.2.19
+     */
+    public void disableHistory() {
+        this.history = null;
+    }
+
+    /**
+     * Gets the latest events of a class this bus received
+     * @param type the concrete event class
+     * @return the events, oldest first, or an empty list if the history is disabled
+     * @since 1.2.19
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Event> List<T> getHistory(Class<T> type) {
+        EventHistory history = this.history;
+        return history == null ? List.of() : (List<T>) history.get(type);
+    }
+
+    /**
+     * Discards every event kept so far
+     * @since 1.2.19
+     */
+    public void clearHistory() {
+        EventHistory history = this.history;
+        if(history != null) history.clear();
+    }
+
     public void subscribe(Object object) throws InvalidSubscriberException {
-        check(object);
-        subscribers.add(object);
+        // builds the dispatch table ahead of the first event,
+        // generated dispatchers were already checked when compiling
+        if(!SubscriberTable.of(object).generated) check(object);
+        resolutionCache.add(registry.add(object));
+    }
+
+    /**
+     * Subscribes an object, optionally replaying the history to it
+     * @param object the subscriber
+     * @param replay whether to deliver every kept event the subscriber
+     *               accepts, in the order this bus received them
+     * @throws InvalidSubscriberException if the subscriber methods are invalid
+     * @apiNote events are replayed on the calling thread, to the new subscriber
+     * only. An event fired while subscribing may be delivered both live and
+     * replayed.
+     * @see EventBus#enableHistory(int, int)
+     * @since 1.2.19
+     */
+    public void subscribe(Object object, boolean replay) throws InvalidSubscriberException {
+        subscribe(object);
+        if(replay) replay(object);
+    }
+
+    /**
+     * Delivers the kept events to a single subscriber
+     * @param o the subscriber
+     */
+    protected void replay(Object o) {
+        EventHistory history = this.history;
+        if(history == null) return;
+        SubscriberTable table = SubscriberTable.of(o);
+        for(Event event : history.select(type -> table.handlersFor(type).length != 0)) deliverTo(o, event);
+    }
+
+    /**
+     * Subscribes an object without keeping it reachable. Once the
+     * object is garbage collected, it stops receiving events and is
+     * removed from this bus without having to unsubscribe.
+     * @param object the subscriber
+     * @throws InvalidSubscriberException if the object is a class, or
+     * if the subscriber methods are invalid
+     * @apiNote weak subscribers are unsubscribed by identity rather than equality.
+     * @since 1.2.19
+     */
+    public void subscribeWeakly(Object object) throws InvalidSubscriberException {
+        if(object instanceof Class<?>) throw new InvalidSubscriberException("classes cannot be subscribed weakly");
+        if(!SubscriberTable.of(object).generated) check(object);
+        resolutionCache.add(registry.addWeak(object));
     }
 
     public void unsubscribe(Object object) {
-        subscribers.remove(object);
+        SubscriberRegistry.Entry removed = registry.remove(object);
+        if(removed != null) resolutionCache.remove(List.of(removed));
+    }
+
+    /**
+     * Resolves all handlers again from the current subscribers,
+     * subscribing and unsubscribing already keep them up to date.
+     */
+    protected void invalidate() {
+        resolutionCache.invalidate();
+    }
+
+    /**
+     * Gets every handler accepting the event class, in order of delivery
+     * @param eventClass the concrete event class
+     * @return the deliveries
+     */
+    ResolutionCache.Delivery[] resolve(Class<?> eventClass) {
+        resolutionCache.remove(registry.expunge());
+        return resolutionCache.deliveries(eventClass);
     }
 
     /**
      * Hooks this event bus to a certain parent, listening
      * to all events from the said parent.
      * <p></p>
-     * This method does a deep recursion check to see whether
-     * the parent inherits from this bus, if so, an {@link IllegalStateException}
+     * This method checks whether the parent already inherits
+     * from this bus, if so, an {@link IllegalStateException}
      * will be thrown.
      *
      * @param parent the parent
@@ -123,84 +333,254 @@ public class EventBus {
      */
     public void hook(EventBus parent) {
         if(parent == this) throw new IllegalStateException("cannot inherit from self");
-        recursionCheck(Objects.requireNonNull(parent) /* Implicit null check */);
-        parent.inheritances.add(this);
+        Objects.requireNonNull(parent);
+        synchronized (graphLock) {
+            recursionCheck(parent);
+            if(parent.inheritances.add(this)) PropagationPlan.graphChanged();
+        }
     }
 
     public void uninherit(EventBus parent) {
-        parent.inheritances.remove(this);
+        synchronized (graphLock) {
+            if(parent.inheritances.remove(this)) PropagationPlan.graphChanged();
+        }
     }
 
     public void fire(Event event) {
+        if(!accept(event)) return;
+        dispatch(event);
+        propagate(event);
+    }
+
+    /**
+     * Gets the buses events propagate to, rebuilding them if the inheritances changed
+     * @return the plan
+     */
+    PropagationPlan plan() {
+        PropagationPlan plan = this.plan;
+        if(!plan.current()) this.plan = plan = PropagationPlan.of(this);
+        return plan;
+    }
+
+    /**
+     * Fires an event this bus received to every bus inheriting from this bus
+     * @param event the event
+     */
+    // 1.2.19: Walks the flattened plan instead of recursing into every child
+    void propagate(Event event) {
+        PropagationPlan plan = plan();
+        EventBus[] buses = plan.buses;
+        for(int i = 0; i < buses.length; ) {
+            EventBus bus = buses[i];
+            if(!plan.inline[i]) {
+                bus.fire(event);
+                i++;
+            } else if(bus.accept(event)) {
+                bus.dispatch(event);
+                i++;
+            } else {
+                // rejected as a duplicate, so are its children
+                i = plan.ends[i];
+            }
+        }
+    }
+
+    /**
+     * Fires a batch this bus received to every bus inheriting from this bus
+     * @param events the events, as accepted by this bus
+     */
+    void propagateAll(List<Event> events) {
+        PropagationPlan plan = plan();
+        EventBus[] buses = plan.buses;
+        // the events each bus accepted, handed to its children
+        List<List<Event>> received = new ArrayList<>(Collections.nCopies(buses.length, null));
+        for(int i = 0; i < buses.length; ) {
+            EventBus bus = buses[i];
+            int parent = plan.parents[i];
+            List<Event> input = parent < 0 ? events : received.get(parent);
+            if(!plan.inline[i]) {
+                bus.fireAll(input);
+                i++;
+                continue;
+            }
+            List<Event> accepted = bus.signAll(input);
+            if(accepted.isEmpty()) {
+                i = plan.ends[i];
+                continue;
+            }
+            bus.deliverAll(accepted);
+            received.set(i++, accepted);
+        }
+    }
+
+    /**
+     * Signs an event and keeps it in the history
+     * @param event the event
+     * @return false if the event is a duplicate this bus should discard
+     */
+    boolean accept(Event event) {
         if(!this.processDuplicates) {
-            EventBusAccessor accessor = Secret.getAccessor();
-            if(accessor.signed(event, identifier)) return;
-            accessor.sign(event, identifier);
+            if(!Secret.getAccessor().sign(event, signature)) return false;
         }
-        subscribers.forEach(s -> fire(s, event));
-        inheritances.forEach(bus -> bus.fire(event));
+        EventHistory history = this.history;
+        if(history != null) history.record(event);
+        return true;
     }
 
+    /**
+     * Delivers an event to the subscribers of this bus only
+     * @param event the event, already signed
+     */
+    void dispatch(Event event) {
+        for(ResolutionCache.Delivery delivery : resolve(event.getClass())) {
+            Object target = delivery.target();
+            if(delivery.collected(target)) continue;
+            deliver(target, delivery.handler, event);
+        }
+    }
+
+    /**
+     * Fires a batch of events, in order.
+     * <p></p>
+     * Compared to firing each event individually, handlers are resolved
+     * once per run of events of the same class, hooked buses receive the
+     * batch as a whole, and all failures of the batch are passed to the
+     * error handler at once, the first failure carrying the rest as
+     * suppressed exceptions.
+     * @param events the events
+     * @since 1.2.19
+     */
+    public void fireAll(Collection<? extends Event> events) {
+        List<Event> accepted = signAll(events);
+        if(accepted.isEmpty()) return;
+        deliverAll(accepted);
+        propagateAll(accepted);
+    }
+
+    /**
+     * Fires a batch of events, in encounter order.
+     * @param events the events
+     * @see EventBus#fireAll(Collection)
+     * @since 1.2.19
+     */
+    public void fireAll(Stream<? extends Event> events) {
+        fireAll(events.toList());
+    }
+
+    /**
+     * Signs every event of the batch and keeps them in the history
+     * @param events the events
+     * @return the events this bus has not received before
+     */
+    protected List<Event> signAll(Collection<? extends Event> events) {
+        List<Event> accepted = new ArrayList<>(events.size());
+        for(Event event : events) {
+            if(accept(event)) accepted.add(event);
+        }
+        return accepted;
+    }
+
+    /**
+     * Delivers a batch of events to the subscribers of this bus only,
+     * passing all failures to the error handler once delivery is done.
+     * @param events the events, already signed
+     */
+    protected void deliverAll(List<? extends Event> events) {
+        Class<?> resolvedClass = null;
+        ResolutionCache.Delivery[] deliveries = null;
+        Throwable failure = null;
+        for(Event event : events) {
+            if(event.getClass() != resolvedClass) {
+                resolvedClass = event.getClass();
+                deliveries = resolve(resolvedClass);
+            }
+            for(ResolutionCache.Delivery delivery : deliveries) {
+                Object target = delivery.target();
+                if(delivery.collected(target)) continue;
+                try {
+                    invoke(target, delivery.handler, event);
+                } catch (Throwable t) {
+                    if(failure == null) failure = t;
+                    else if(failure != t) failure.addSuppressed(t);
+                }
+            }
+        }
+        if(failure != null && this.errorHandler != null) this.errorHandler.accept(failure);
+    }
+
+    /**
+     * Checks whether hooking this bus to the parent would form a cycle,
+     * that is, whether the parent already inherits from this bus.
+     * @param parent the parent
+     * @throws IllegalStateException if the parent inherits from this bus
+     */
+    // 1.2.19: Iterative, and no longer rejects every bus that has children
     protected void recursionCheck(EventBus parent) {
-        if(this.inheritances.contains(parent)) throw new IllegalStateException("recursive inheritance");
-        this.inheritances.forEach(this::recursionCheck);
+        Set<EventBus> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<EventBus> pending = new ArrayDeque<>(this.inheritances);
+        while(!pending.isEmpty()) {
+            EventBus bus = pending.pop();
+            if(bus == parent) throw new IllegalStateException("recursive inheritance");
+            if(visited.add(bus)) pending.addAll(bus.inheritances);
+        }
     }
 
+    /**
+     * Delivers an event to a single subscriber
+     * @param o the subscriber
+     * @param event the event
+     * @deprecated events are delivered in order of priority across every
+     * subscriber of the bus rather than one subscriber at a time, so the bus
+     * no longer calls this method and overriding it has no effect.
+     */
+    @Deprecated(since = "1.2.19")
     protected void fire(Object o, Event event) {
-        EventBusSubscriber a; Class<?> c;
-        Method[] methods;
-        Object invocationTarget;
-        if(o instanceof Class<?> cls) {
-            invocationTarget = null;
-            methods = cls.getMethods();
-        } else {
-            invocationTarget = o;
-            methods = o.getClass().getDeclaredMethods();
+        deliverTo(o, event);
+    }
+
+    /**
+     * Delivers an event to a single subscriber, ignoring the other subscribers
+     * @param o the subscriber
+     * @param event the event
+     */
+    void deliverTo(Object o, Event event) {
+        Object invocationTarget = o instanceof Class<?> ? null : o;
+        for(SubscriberTable.Handler handler : SubscriberTable.of(o).handlersFor(event.getClass())) {
+            deliver(invocationTarget, handler, event);
         }
+    }
 
-        // 1.2.15: Added EventBus priority
-        Arrays.sort(methods, (left, right) -> {
-            EventBusSubscriber l = left.getAnnotation(EventBusSubscriber.class);
-            EventBusSubscriber r = right.getAnnotation(EventBusSubscriber.class);
-            if(l == null && r == null) return 0;
-            if(l == null) return -1;
-            if(r == null) return 1;
-            // the lower the priority, the higher the ordinal.
-            return r.priority().ordinal() - l.priority().ordinal();
-        });
+    /**
+     * Invokes a single handler, passing failures to the error handler
+     * @return the value returned by the handler, or null if it failed
+     */
+    Object deliver(Object invocationTarget, SubscriberTable.Handler handler, Event event) {
+        try {
+            return invoke(invocationTarget, handler, event);
+        } catch (Throwable t) {
+            if(this.errorHandler != null) this.errorHandler.accept(t);
+            return null;
+        }
+    }
 
-        for(Method method : methods) {
-            condition:
-            if((a = method.getAnnotation(EventBusSubscriber.class)) != null &&
-               method.getParameterCount() == 1 &&
-               method.getParameterTypes()[0].isAssignableFrom((c = event.getClass()))) {
-                method.setAccessible(true);
-                if(a.value().length == 0 && a.only().length == 0) {
-                    ActionResult.run(() -> method.invoke(invocationTarget, event));
-                } else {
-                    for(Class<?> clazz : a.only()) {
-                        if(clazz == c) {
-                            ActionResult.run(() -> method.invoke(invocationTarget, event))
-                                    .onFail(t -> {
-                                        if(t instanceof ReflectiveOperationException rf) throw new InternalError("Failed to invoke " + method + ": ", rf);
-                                        if(this.errorHandler != null) this.errorHandler.accept(t);
-                                    });
-                            break condition;
-                        }
-                    }
-                    for(Class<?> clazz : a.value()) {
-                        if(clazz.isAssignableFrom(c)) {
-                            ActionResult.run(() -> method.invoke(invocationTarget, event))
-                                    .onFail(t -> {
-                                        if(t instanceof ReflectiveOperationException rf) throw new InternalError("Failed to invoke " + method + ": ", rf);
-                                        if(this.errorHandler != null) this.errorHandler.accept(t);
-                                    });
-                            break condition;
-                        }
-                    }
-                }
-            }
+    /**
+     * Invokes a single handler, recording metrics if enabled
+     * @return the value returned by the handler
+     * @throws Throwable anything thrown by the handler
+     */
+    Object invoke(Object invocationTarget, SubscriberTable.Handler handler, Event event) throws Throwable {
+        DeliveryMetrics metrics = this.metrics;
+        if(metrics == null) return handler.invoker.invoke(invocationTarget, event);
+        long start = System.nanoTime();
+        Object ret;
+        try {
+            ret = handler.invoker.invoke(invocationTarget, event);
+        } catch (Throwable t) {
+            metrics.record(handler, System.nanoTime() - start, true);
+            throw t;
         }
+        metrics.record(handler, System.nanoTime() - start, false);
+        return ret;
     }
 
     protected static void check(Object o) {
@@ -234,7 +614,8 @@ public class EventBus {
                             throw new InvalidSubscriberException("class " + clazz + " is incompatible for listening event type " + c);
                         }
                     }
-                    return; // yay!!! we found one, this qualifies as a subscriber then
+                    // 1.2.19: Checks every annotated method rather than the first one found,
+                    // as the order is unspecified and the annotation processor checks them all
                 } else {
                     throw new InvalidSubscriberException("class " + c + " is not an instance of Event");
                 }
@@ -256,4 +637,51 @@ public class EventBus {
     public int hashCode() {
         return Objects.hash(identifier);
     }
+
+    /**
+     * The live subscribers of the bus as a list, in order of registration
+     */
+    private final class SubscriberList extends AbstractList<Object> {
+        @Override
+        public Object get(int index) {
+            if(index >= 0) {
+                for(Object o : registry) {
+                    if(index-- == 0) return o;
+                }
+            }
+            throw new IndexOutOfBoundsException();
+        }
+
+        @Override
+        public Iterator<Object> iterator() {
+            return registry.iterator();
+        }
+
+        // counted, as collected weak subscribers are skipped
+        @Override
+        public int size() {
+            int size = 0;
+            for(Object ignored : registry) size++;
+            return size;
+        }
+
+        @Override
+        public boolean add(Object o) {
+            subscribe(o);
+            return true;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            SubscriberRegistry.Entry removed = registry.remove(o);
+            if(removed == null) return false;
+            resolutionCache.remove(List.of(removed));
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            for(Object o : registry) unsubscribe(o);
+        }
+    }
 }
@@ -0,0 +1,154 @@
+package io.github.rainvaporeon.fishutils.utils.eventbus;
+
+import io.github.rainvaporeon.fishutils.utils.eventbus.events.Event;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+/**
+ * The latest events a bus received, kept per concrete event class.
+ * <p></p>
+ * Every class keeps at most a fixed amount of events in a ring, overwriting
+ * its oldest event once full. Recording an event of a known class takes
+ * no lock. The amount of classes is capped as well, dropping the class
+ * that received an event the longest ago once an event of a new class arrives.
+ * @since 1.2.19
+ */
+final class EventHistory {
+
+    private static final Comparator<Record> ORDER = Comparator.comparingLong(record -> record.sequence);
+
+    private final int perType;
+    private final int maxTypes;
+
+    /**
+     * Classes mapped to their events; classes are only added and dropped while holding the map
+     */
+    private final Map<Class<?>, Ring> types = new ConcurrentHashMap<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    EventHistory(int perType, int maxTypes) {
+        if(perType <= 0) throw new IllegalArgumentException("history must keep at least one event per type");
+        if(maxTypes <= 0) throw new IllegalArgumentException("history must keep at least one type");
+        this.perType = perType;
+        this.maxTypes = maxTypes;
+    }
+
+    void record(Event event) {
+        Ring ring = types.get(event.getClass());
+        if(ring == null) ring = add(event.getClass());
+        ring.add(new Record(sequence.getAndIncrement(), event));
+    }
+
+    private Ring add(Class<?> type) {
+        synchronized (types) {
+            Ring ring = types.get(type);
+            if(ring != null) return ring;
+            if(types.size() >= maxTypes) evict();
+            types.put(type, ring = new Ring(perType, sequence.get()));
+            return ring;
+        }
+    }
+
+    // drops the class that received an event the longest ago
+    private void evict() {
+        Class<?> eldest = null;
+        long latest = Long.MAX_VALUE;
+        for(Map.Entry<Class<?>, Ring> entry : types.entrySet()) {
+            long sequence = entry.getValue().latest;
+            if(sequence < latest) {
+                latest = sequence;
+                eldest = entry.getKey();
+            }
+        }
+        if(eldest != null) types.remove(eldest);
+    }
+
+    /**
+     * Gets the events of the given class
+     * @param type the concrete event class
+     * @return the events, oldest first
+     */
+    List<Event> get(Class<?> type) {
+        Ring ring = types.get(type);
+        if(ring == null) return List.of();
+        List<Record> records = new ArrayList<>(perType);
+        ring.collect(records);
+        return events(records);
+    }
+
+    /**
+     * Gets the events of every class matching the filter
+     * @param filter tests the concrete event classes
+     * @return the events, in the order they were received
+     */
+    List<Event> select(Predicate<Class<?>> filter) {
+        List<Record> selected = new ArrayList<>();
+        types.forEach((type, ring) -> {
+            if(filter.test(type)) ring.collect(selected);
+        });
+        return events(selected);
+    }
+
+    private static List<Event> events(List<Record> records) {
+        records.sort(ORDER);
+        List<Event> ret = new ArrayList<>(records.size());
+        for(Record record : records) ret.add(record.event);
+        return ret;
+    }
+
+    void clear() {
+        synchronized (types) {
+            types.clear();
+        }
+    }
+
+    /**
+     * The latest events of a class, in slots indexed by the amount of events recorded
+     */
+    private static final class Ring {
+        private final AtomicReferenceArray<Record> slots;
+        private final AtomicLong count = new AtomicLong();
+
+        /**
+         * The sequence of the latest event, approximate while events are being recorded
+         */
+        private volatile long latest;
+
+        private Ring(int capacity, long latest) {
+            this.slots = new AtomicReferenceArray<>(capacity);
+            this.latest = latest;
+        }
+
+        private void add(Record record) {
+            int slot = (int) (count.getAndIncrement() % slots.length());
+            // a writer that was overtaken must not replace a newer event
+            slots.accumulateAndGet(slot, record, (previous, next) -> previous == null || previous.sequence < next.sequence ? next : previous);
+            latest = record.sequence;
+        }
+
+        private void collect(List<Record> records) {
+            for(int i = 0; i < slots.length(); i++) {
+                Record record = slots.get(i);
+                if(record != null) records.add(record);
+            }
+        }
+    }
+
+    private static final class Record {
+        private final long sequence;
+        private final Event event;
+
+        private Record(long sequence, Event event) {
+            this.sequence = sequence;
+            this.event = event;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package io.github.rainvaporeon.fishutils.utils.eventbus;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+
+/**
+ * A snapshot of the delivery metrics of a single subscribing method.
+ * @see EventBus#getHandlerStats()
+ * @since 1.2.19
+ */
+public final class HandlerStats {
+    private final Method method;
+    private final long invocations;
+    private final long errors;
+    private final long totalNanos;
+    private final long maxNanos;
+    private final long[] histogram;
+
+    HandlerStats(Method method, long invocations, long errors, long totalNanos, long maxNanos, long[] histogram) {
+        this.method = method;
+        this.invocations = invocations;
+        this.errors = errors;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+        this.histogram = histogram;
+    }
+
+    /**
+     * Gets the subscribing method
+     * @return the method
+     */
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Gets the amount of times the method was invoked
+     * @return the invocation count
+     */
+    public long getInvocations() {
+        return invocations;
+    }
+
+    /**
+     * Gets the amount of invocations that threw
+     * @return the error count
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Gets the time spent in the method across all invocations
+     * @return the cumulative latency
+     */
+    public Duration getTotalLatency() {
+        return Duration.ofNanos(totalNanos);
+    }
+
+    /**
+     * Gets the longest time a single invocation took
+     * @return the max latency
+     */
+    public Duration getMaxLatency() {
+        return Duration.ofNanos(maxNanos);
+    }
+
+    /**
+     * Gets the mean time of an invocation
+     * @return the average latency
+     */
+    public Duration getAverageLatency() {
+        return Duration.ofNanos(invocations == 0 ? 0 : totalNanos / invocations);
+    }
+
+    /**
+     * Gets the latency histogram, in which index {@code i} holds the amount
+     * of invocations that took between {@code 2^i} (inclusive) and
+     * {@code 2^(i + 1)} (exclusive) nanoseconds, and index 0 also holds
+     * invocations that took no measurable time.
+     * @return a copy of the histogram
+     */
+    public long[] getHistogram() {
+        return histogram.clone();
+    }
+
+    // Combines the stats of two handlers backed by the same method
+    HandlerStats combine(HandlerStats other) {
+        long[] histogram = this.histogram.clone();
+        for(int i = 0; i < histogram.length; i++) histogram[i] += other.histogram[i];
+        return new HandlerStats(method, invocations + other.invocations, errors + other.errors,
+                totalNanos + other.totalNanos, Math.max(maxNanos, other.maxNanos), histogram);
+    }
+
+    @Override
+    public String toString() {
+        return "HandlerStats{" +
+                "method=" + method +
+                ", invocations=" + invocations +
+                ", errors=" + errors +
+                ", total=" + getTotalLatency() +
+                ", max=" + getMaxLatency() +
+                '}';
+    }
+}
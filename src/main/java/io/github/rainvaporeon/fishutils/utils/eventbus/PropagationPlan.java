@@ -0,0 +1,167 @@
+package io.github.rainvaporeon.fishutils.utils.eventbus;
+
+import io.github.rainvaporeon.fishutils.utils.eventbus.events.Event;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The buses an event propagates to after a bus received it, flattened.
+ * <p></p>
+ * The plan lists every bus below the root in the order the event reaches
+ * them, parents before their children, along with the end of the subtree of
+ * each bus so that a bus rejecting the event can skip everything below it.
+ * A bus reachable through several parents is listed under each of them, as
+ * the parent reaching it first may reject the event; a bus discarding
+ * duplicates then rejects the event wherever it arrives again.
+ * <p></p>
+ * Buses overriding how events are fired, such as {@link AsyncEventBus},
+ * are listed without their subtree and left to propagate on their own.
+ * <p></p>
+ * Plans are rebuilt on use once any bus was hooked or unhooked.
+ * @since 1.2.19
+ */
+final class PropagationPlan {
+
+    /**
+     * Incremented whenever any bus is hooked or unhooked
+     */
+    private static final AtomicLong graphVersion = new AtomicLong();
+
+    /**
+     * Whether the buses of a class fire events the way {@link EventBus} and {@link CancellableEventBus} do
+     */
+    private static final ClassValue<Boolean> INLINE = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            try {
+                return type.getMethod("fire", Event.class).getDeclaringClass() == EventBus.class
+                        && type.getMethod("fireAll", Collection.class).getDeclaringClass() == EventBus.class
+                        && (!CancellableEventBus.class.isAssignableFrom(type)
+                            || type.getMethod("fireCancellable", Event.class).getDeclaringClass() == CancellableEventBus.class);
+            } catch (NoSuchMethodException e) {
+                throw new InternalError(e);
+            }
+        }
+    };
+
+    static final PropagationPlan EMPTY = new PropagationPlan(-1, new EventBus[0], new int[0], new int[0], new boolean[0], new boolean[0]);
+
+    final long version;
+    final EventBus[] buses;
+    /**
+     * The index after the subtree of each bus
+     */
+    final int[] ends;
+    /**
+     * The index of the parent of each bus, or -1 for children of the root
+     */
+    final int[] parents;
+    /**
+     * Whether each bus is fired inline, otherwise it is fired on its own
+     */
+    final boolean[] inline;
+    /**
+     * Whether each bus and every bus above it may cancel events, so that
+     * {@link CancellableEventBus#fireCancellable(Event)} reaches it as cancellable
+     */
+    final boolean[] cancellable;
+
+    private PropagationPlan(long version, EventBus[] buses, int[] ends, int[] parents, boolean[] inline, boolean[] cancellable) {
+        this.version = version;
+        this.buses = buses;
+        this.ends = ends;
+        this.parents = parents;
+        this.inline = inline;
+        this.cancellable = cancellable;
+    }
+
+    /**
+     * Invalidates every plan, this should be called after every change to the inheritances
+     */
+    static void graphChanged() {
+        graphVersion.incrementAndGet();
+    }
+
+    /**
+     * Checks whether the plan reflects the current inheritances
+     * @return true if up-to-date
+     */
+    boolean current() {
+        return version == graphVersion.get();
+    }
+
+    /**
+     * Builds the plan of a bus
+     * @param root the bus firing events
+     * @return the plan
+     */
+    static PropagationPlan of(EventBus root) {
+        long version = graphVersion.get();
+        List<EventBus> buses = new ArrayList<>();
+        List<Integer> parents = new ArrayList<>();
+        List<Integer> ends = new ArrayList<>();
+        List<Boolean> inline = new ArrayList<>();
+        List<Boolean> cancellable = new ArrayList<>();
+        // buses on the path to the current bus, guarding against cycles hooked concurrently
+        Set<EventBus> path = Collections.newSetFromMap(new IdentityHashMap<>());
+        path.add(root);
+
+        Deque<Frame> stack = new ArrayDeque<>();
+        stack.push(new Frame(root, -1));
+        while(!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            if(!frame.children.hasNext()) {
+                stack.pop();
+                path.remove(frame.bus);
+                if(frame.index >= 0) ends.set(frame.index, buses.size());
+                continue;
+            }
+            EventBus child = frame.children.next();
+            if(path.contains(child)) continue;
+            int index = buses.size();
+            boolean expand = INLINE.get(child.getClass());
+            buses.add(child);
+            parents.add(frame.index);
+            ends.add(index + 1);
+            inline.add(expand);
+            cancellable.add(child instanceof CancellableEventBus
+                    && (frame.index < 0 ? root instanceof CancellableEventBus : cancellable.get(frame.index)));
+            if(expand) {
+                path.add(child);
+                stack.push(new Frame(child, index));
+            }
+        }
+
+        int size = buses.size();
+        int[] endArray = new int[size], parentArray = new int[size];
+        boolean[] inlineArray = new boolean[size], cancellableArray = new boolean[size];
+        for(int i = 0; i < size; i++) {
+            endArray[i] = ends.get(i);
+            parentArray[i] = parents.get(i);
+            inlineArray[i] = inline.get(i);
+            cancellableArray[i] = cancellable.get(i);
+        }
+        return new PropagationPlan(version, buses.toArray(new EventBus[0]), endArray, parentArray, inlineArray, cancellableArray);
+    }
+
+    private static final class Frame {
+        private final EventBus bus;
+        private final int index;
+        private final Iterator<EventBus> children;
+
+        private Frame(EventBus bus, int index) {
+            this.bus = bus;
+            this.index = index;
+            this.children = bus.inheritances.iterator();
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package io.github.rainvaporeon.fishutils.utils.eventbus;
+
+import io.github.rainvaporeon.fishutils.utils.eventbus.events.Event;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An event bus with a bounded queue of posted events.
+ * <p></p>
+ * Producers {@link QueuedEventBus#post(Event) post} events into a preallocated
+ * ring buffer, and one or more consumer threads drain it by {@link EventBus#fire(Event) firing}
+ * every event in the order it was taken. Once the queue is full, the
+ * {@link Backpressure} policy decides what happens to newly posted events.
+ * <p></p>
+ * Firing events directly is still synchronous and bypasses the queue.
+ * @since 1.2.19
+ */
+public class QueuedEventBus extends EventBus {
+
+    private static final AtomicInteger queueCount = new AtomicInteger();
+
+    // How long a blocked producer parks before checking again
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final RingBuffer buffer;
+    private final Backpressure backpressure;
+    private final Thread[] consumers;
+    private final AtomicInteger idleConsumers = new AtomicInteger();
+
+    /**
+     * 1 for each consumer parked until an event is posted, cleared by whoever wakes it
+     */
+    private final AtomicIntegerArray waiting;
+    private volatile boolean shutdown;
+
+    private final LongAdder posted = new LongAdder();
+    private final LongAdder drained = new LongAdder();
+    private final LongAdder droppedOldest = new LongAdder();
+    private final LongAdder droppedNewest = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+    private final LongAdder totalLatency = new LongAdder();
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    /**
+     * Creates a queued event bus and starts its consumers
+     * @param capacity the queue capacity, rounded up to a power of two
+     * @param consumers the amount of consumer threads
+     * @param backpressure what to do with events posted to a full queue
+     * @param processDuplicates whether this bus should be able to
+     *                     receive the same event multiple times
+     * @apiNote the consumer threads are daemon threads, and are
+     * stopped once {@link QueuedEventBus#shutdown()} is called and the queue is drained.
+     */
+    // the consumers only fire events once posted, which takes the constructed bus
+    @SuppressWarnings("this-escape")
+    public QueuedEventBus(int capacity, int consumers, Backpressure backpressure, boolean processDuplicates) {
+        super(processDuplicates);
+        if(consumers <= 0) throw new IllegalArgumentException("at least one consumer is required");
+        this.buffer = new RingBuffer(capacity);
+        this.backpressure = Objects.requireNonNull(backpressure);
+        this.consumers = new Thread[consumers];
+        this.waiting = new AtomicIntegerArray(consumers);
+        int id = queueCount.getAndIncrement();
+        for(int i = 0; i < consumers; i++) {
+            int index = i;
+            this.consumers[i] = Thread.ofPlatform().daemon().name("EventBus-queue-" + id + "-" + i).unstarted(() -> drain(index));
+        }
+        for(Thread consumer : this.consumers) consumer.start();
+    }
+
+    public QueuedEventBus(int capacity, int consumers, Backpressure backpressure) {
+        this(capacity, consumers, backpressure, false);
+    }
+
+    public QueuedEventBus(int capacity, Backpressure backpressure) {
+        this(capacity, 1, backpressure, false);
+    }
+
+    /**
+     * Posts an event to the queue
+     * @param event the event
+     * @return true if the event was queued or, under {@link Backpressure#CALLER_RUNS},
+     * fired by the caller; false if the event was dropped.
+     * @throws IllegalStateException if the bus was shut down
+     */
+    public boolean post(Event event) {
+        Objects.requireNonNull(event);
+        if(shutdown) throw new IllegalStateException("bus is shut down");
+        posted.increment();
+        if(buffer.offer(event, System.nanoTime())) {
+            signalConsumer();
+            return true;
+        }
+        switch (backpressure) {
+            case BLOCK -> {
+                while(!buffer.offer(event, System.nanoTime())) {
+                    if(shutdown) throw new IllegalStateException("bus is shut down");
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+                signalConsumer();
+                return true;
+            }
+            case DROP_OLDEST -> {
+                do {
+                    if(buffer.poll(null) != null) droppedOldest.increment();
+                } while(!buffer.offer(event, System.nanoTime()));
+                signalConsumer();
+                return true;
+            }
+            case DROP_NEWEST -> {
+                droppedNewest.increment();
+                return false;
+            }
+            case CALLER_RUNS -> {
+                callerRuns.increment();
+                fire(event);
+                return true;
+            }
+        }
+        throw new AssertionError(backpressure);
+    }
+
+    // Wakes a consumer if any of them is idle, called after publishing an event
+    private void signalConsumer() {
+        if(idleConsumers.get() == 0) return;
+        for(int i = 0; i < consumers.length; i++) {
+            if(waiting.compareAndSet(i, 1, 0)) {
+                idleConsumers.decrementAndGet();
+                LockSupport.unpark(consumers[i]);
+                return;
+            }
+        }
+    }
+
+    private void drain(int index) {
+        long[] postedAt = new long[1];
+        while(true) {
+            Event event = buffer.poll(postedAt);
+            if(event == null) {
+                if(shutdown) return;
+                event = awaitEvent(index, postedAt);
+                if(event == null) continue;
+            }
+            long latency = System.nanoTime() - postedAt[0];
+            totalLatency.add(latency);
+            maxLatency.accumulateAndGet(latency, Math::max);
+            drained.increment();
+            try {
+                fire(event);
+            } catch (Throwable t) {
+                // the error handler rethrew, the consumer must survive it
+                Thread.currentThread().getUncaughtExceptionHandler().uncaughtException(Thread.currentThread(), t);
+            }
+        }
+    }
+
+    /**
+     * Parks a consumer until it is signalled, or the bus is shut down
+     * @param index the consumer
+     * @param postedAt receives the time the event was inserted at
+     * @return an event posted while the consumer was marked as waiting, or null once woken
+     */
+    private Event awaitEvent(int index, long[] postedAt) {
+        waiting.set(index, 1);
+        idleConsumers.incrementAndGet();
+        Event event;
+        // polls again to not miss an event published before being marked as waiting
+        while((event = buffer.poll(postedAt)) == null && !shutdown && waiting.get(index) == 1) {
+            LockSupport.park(this);
+        }
+        if(waiting.compareAndSet(index, 1, 0)) idleConsumers.decrementAndGet();
+        return event;
+    }
+
+    /**
+     * Stops accepting events, the consumers will stop
+     * after the remaining events are delivered.
+     */
+    public void shutdown() {
+        this.shutdown = true;
+        for(Thread consumer : consumers) LockSupport.unpark(consumer);
+    }
+
+    /**
+     * Waits for the consumers to stop after {@link QueuedEventBus#shutdown()}
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return true if every consumer stopped
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for(Thread consumer : consumers) {
+            long remaining = deadline - System.nanoTime();
+            if(remaining <= 0 || !consumer.join(Duration.ofNanos(remaining))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Gets the amount of events waiting in the queue
+     * @return the queue depth
+     */
+    public int getQueueDepth() {
+        return buffer.size();
+    }
+
+    /**
+     * Gets the capacity of the queue
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Gets the amount of events posted, including those dropped
+     * @return the posted count
+     */
+    public long getPostedCount() {
+        return posted.sum();
+    }
+
+    /**
+     * Gets the amount of events taken from the queue by the consumers
+     * @return the drained count
+     */
+    public long getDrainedCount() {
+        return drained.sum();
+    }
+
+    /**
+     * Gets the amount of queued events discarded under {@link Backpressure#DROP_OLDEST}
+     * @return the drop count
+     */
+    public long getDroppedOldestCount() {
+        return droppedOldest.sum();
+    }
+
+    /**
+     * Gets the amount of posted events discarded under {@link Backpressure#DROP_NEWEST}
+     * @return the drop count
+     */
+    public long getDroppedNewestCount() {
+        return droppedNewest.sum();
+    }
+
+    /**
+     * Gets the amount of events fired by the posting thread under {@link Backpressure#CALLER_RUNS}
+     * @return the count
+     */
+    public long getCallerRunsCount() {
+        return callerRuns.sum();
+    }
+
+    /**
+     * Gets the average time events spent in the queue before being fired
+     * @return the latency, in nanoseconds
+     */
+    public long getAverageDrainLatency() {
+        long count = drained.sum();
+        return count == 0 ? 0 : totalLatency.sum() / count;
+    }
+
+    /**
+     * Gets the longest time an event spent in the queue before being fired
+     * @return the latency, in nanoseconds
+     */
+    public long getMaxDrainLatency() {
+        return maxLatency.get();
+    }
+
+    /**
+     * What to do with an event posted while the queue is full
+     */
+    public enum Backpressure {
+        /**
+         * Waits until there is space in the queue
+         */
+        BLOCK,
+        /**
+         * Discards the eldest queued event to make space
+         */
+        DROP_OLDEST,
+        /**
+         * Discards the posted event
+         */
+        DROP_NEWEST,
+        /**
+         * Fires the event on the posting thread
+         */
+        CALLER_RUNS
+    }
+}
@@ -0,0 +1,281 @@
+package io.github.rainvaporeon.fishutils.utils.eventbus;
+
+import io.github.rainvaporeon.fishutils.utils.eventbus.events.EventBusSubscriber;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+/**
+ * Maps concrete event classes to every delivery a bus makes for them.
+ * <p></p>
+ * A delivery list is resolved the first time an event class is fired,
+ * ordered by priority and then by registration, and is reused for every
+ * later event of that class. Subscribing and unsubscribing patches the
+ * lists resolved so far rather than discarding them, so that only the
+ * handlers of the changed subscriber are looked at, and removed subscribers
+ * are no longer reachable from the cache.
+ * <p></p>
+ * Changes are serialized, while resolved lists are read without locking.
+ * @since 1.2.19
+ */
+final class ResolutionCache extends ClassValue<ResolutionCache.Resolution> {
+
+    private static final Delivery[] EMPTY = new Delivery[0];
+    private static final EventBusSubscriber.Priority[] PRIORITIES = EventBusSubscriber.Priority.values();
+
+    /**
+     * The live subscribers of the bus
+     */
+    private final SubscriberRegistry subscribers;
+
+    /**
+     * Guards every change to the cache
+     */
+    private final Object lock = new Object();
+
+    /**
+     * The registrations included in the cache, by registration number; guarded by the lock
+     */
+    private final SortedMap<Long, SubscriberRegistry.Entry> entries = new TreeMap<>();
+
+    /**
+     * The event classes resolved so far, weakly held; guarded by the lock
+     */
+    private final Set<Class<?>> eventClasses = Collections.newSetFromMap(new WeakHashMap<>());
+
+    ResolutionCache(SubscriberRegistry subscribers) {
+        this.subscribers = subscribers;
+    }
+
+    @Override
+    protected Resolution computeValue(Class<?> eventClass) {
+        synchronized(lock) {
+            eventClasses.add(eventClass);
+            return new Resolution(resolve(eventClass));
+        }
+    }
+
+    /**
+     * Gets every delivery of the event class
+     * @param eventClass the concrete event class
+     * @return the deliveries, in order
+     */
+    Delivery[] deliveries(Class<?> eventClass) {
+        return get(eventClass).deliveries;
+    }
+
+    /**
+     * Adds the deliveries of a registration to every resolved event class
+     * @param entry the registration
+     */
+    void add(SubscriberRegistry.Entry entry) {
+        synchronized(lock) {
+            // unsubscribed before being added, or already added by invalidate()
+            if(entry.removed() || entries.containsKey(entry.sequence)) return;
+            Object o = entry.get();
+            if(o == null) return; // collected
+            SubscriberTable table = SubscriberTable.of(o);
+            // patched before the entry is added, so that lists resolved meanwhile do not hold it yet
+            for(Class<?> eventClass : resolvedClasses()) {
+                SubscriberTable.Handler[] handlers = table.handlersFor(eventClass);
+                if(handlers.length == 0) continue;
+                Resolution resolution = get(eventClass);
+                resolution.deliveries = insert(resolution.deliveries, bind(entry, o, handlers));
+            }
+            entries.put(entry.sequence, entry);
+        }
+    }
+
+    /**
+     * Removes the deliveries of registrations from every resolved event class
+     * @param removed the registrations
+     */
+    void remove(Collection<SubscriberRegistry.Entry> removed) {
+        if(removed.isEmpty()) return;
+        synchronized(lock) {
+            for(SubscriberRegistry.Entry entry : removed) entries.remove(entry.sequence);
+            SubscriberRegistry.Entry single = removed.size() == 1 ? removed.iterator().next() : null;
+            Set<SubscriberRegistry.Entry> set = single == null ? new HashSet<>(removed) : null;
+            for(Class<?> eventClass : resolvedClasses()) {
+                Resolution resolution = get(eventClass);
+                resolution.deliveries = single != null ? without(resolution.deliveries, single) : without(resolution.deliveries, set);
+            }
+        }
+    }
+
+    /**
+     * Resolves every event class again from the registrations of the bus
+     */
+    void invalidate() {
+        synchronized(lock) {
+            entries.clear();
+            for(SubscriberRegistry.Entry entry : subscribers.entries()) entries.put(entry.sequence, entry);
+            for(Class<?> eventClass : resolvedClasses()) get(eventClass).deliveries = resolve(eventClass);
+        }
+    }
+
+    // copied, as resolving a class that is not installed yet adds it
+    private Class<?>[] resolvedClasses() {
+        return eventClasses.toArray(new Class<?>[0]);
+    }
+
+    // Each subscriber's handlers are already sorted, so bucketing them by priority
+    // in order of registration gives the global order without sorting.
+    private Delivery[] resolve(Class<?> eventClass) {
+        List<List<Delivery>> buckets = new ArrayList<>(Collections.nCopies(PRIORITIES.length, null));
+        int size = 0;
+        for(SubscriberRegistry.Entry entry : entries.values()) {
+            Object o = entry.get();
+            if(o == null) continue; // collected
+            SubscriberTable.Handler[] handlers = SubscriberTable.of(o).handlersFor(eventClass);
+            for(Delivery delivery : bind(entry, o, handlers)) {
+                int priority = delivery.handler.priority.ordinal();
+                if(buckets.get(priority) == null) buckets.set(priority, new ArrayList<>());
+                buckets.get(priority).add(delivery);
+                size++;
+            }
+        }
+        if(size == 0) return EMPTY;
+        Delivery[] ret = new Delivery[size];
+        int i = 0;
+        for(List<Delivery> bucket : buckets) {
+            if(bucket == null) continue;
+            for(Delivery delivery : bucket) ret[i++] = delivery;
+        }
+        return ret;
+    }
+
+    private static Delivery[] bind(SubscriberRegistry.Entry entry, Object o, SubscriberTable.Handler[] handlers) {
+        if(handlers.length == 0) return EMPTY;
+        WeakReference<Object> reference = entry.reference();
+        Object invocationTarget = o instanceof Class<?> || reference != null ? null : o;
+        Delivery[] ret = new Delivery[handlers.length];
+        for(int i = 0; i < handlers.length; i++) ret[i] = new Delivery(entry, invocationTarget, reference, handlers[i]);
+        return ret;
+    }
+
+    // Lists are sorted by priority and then by registration number, so that the
+    // deliveries of a registration are found and placed by binary search.
+    private static Delivery[] insert(Delivery[] deliveries, Delivery[] added) {
+        Delivery[] ret = new Delivery[deliveries.length + added.length];
+        int from = 0, to = 0;
+        for(Delivery delivery : added) {
+            int at = indexOf(deliveries, delivery.handler.priority.ordinal(), delivery.entry.sequence);
+            System.arraycopy(deliveries, from, ret, to, at - from);
+            to += at - from;
+            from = at;
+            ret[to++] = delivery;
+        }
+        System.arraycopy(deliveries, from, ret, to, deliveries.length - from);
+        return ret;
+    }
+
+    private static Delivery[] without(Delivery[] deliveries, SubscriberRegistry.Entry entry) {
+        // the start and end of the deliveries of the entry, per priority
+        int[] runs = new int[PRIORITIES.length * 2];
+        int count = 0, removed = 0;
+        for(int priority = 0; priority < PRIORITIES.length; priority++) {
+            int from = indexOf(deliveries, priority, entry.sequence), to = from;
+            while(to < deliveries.length && deliveries[to].entry == entry && deliveries[to].handler.priority.ordinal() == priority) to++;
+            if(to == from) continue;
+            runs[count++] = from;
+            runs[count++] = to;
+            removed += to - from;
+        }
+        if(removed == 0) return deliveries;
+        if(removed == deliveries.length) return EMPTY;
+        Delivery[] ret = new Delivery[deliveries.length - removed];
+        int from = 0, to = 0;
+        for(int i = 0; i < count; i += 2) {
+            System.arraycopy(deliveries, from, ret, to, runs[i] - from);
+            to += runs[i] - from;
+            from = runs[i + 1];
+        }
+        System.arraycopy(deliveries, from, ret, to, deliveries.length - from);
+        return ret;
+    }
+
+    // the first delivery not preceding the given priority and registration number
+    private static int indexOf(Delivery[] deliveries, int priority, long sequence) {
+        int low = 0, high = deliveries.length;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            Delivery delivery = deliveries[mid];
+            int ordinal = delivery.handler.priority.ordinal();
+            if(ordinal < priority || ordinal == priority && delivery.entry.sequence < sequence) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private static Delivery[] without(Delivery[] deliveries, Set<SubscriberRegistry.Entry> removed) {
+        int kept = 0;
+        for(Delivery delivery : deliveries) {
+            if(!removed.contains(delivery.entry)) kept++;
+        }
+        if(kept == deliveries.length) return deliveries;
+        if(kept == 0) return EMPTY;
+        Delivery[] ret = new Delivery[kept];
+        int i = 0;
+        for(Delivery delivery : deliveries) {
+            if(!removed.contains(delivery.entry)) ret[i++] = delivery;
+        }
+        return ret;
+    }
+
+    /**
+     * The deliveries of an event class, replaced as the subscribers change
+     */
+    static final class Resolution {
+        private volatile Delivery[] deliveries;
+
+        private Resolution(Delivery[] deliveries) {
+            this.deliveries = deliveries;
+        }
+    }
+
+    /**
+     * A handler bound to the subscriber it is invoked on
+     */
+    static final class Delivery {
+        private final SubscriberRegistry.Entry entry;
+        private final Object target;
+        private final WeakReference<Object> reference;
+        final SubscriberTable.Handler handler;
+
+        Delivery(SubscriberRegistry.Entry entry, Object target, WeakReference<Object> reference, SubscriberTable.Handler handler) {
+            this.entry = entry;
+            this.target = target;
+            this.reference = reference;
+            this.handler = handler;
+        }
+
+        /**
+         * Gets the object to invoke the handler on
+         * @return the target, or null for static handlers
+         * and for weak subscribers that were collected
+         * @see Delivery#collected(Object)
+         */
+        Object target() {
+            return reference == null ? target : reference.get();
+        }
+
+        /**
+         * Checks whether the subscriber of this delivery was collected,
+         * such deliveries are skipped until the bus purges them.
+         * @param target the value returned by {@link Delivery#target()}
+         * @return true if the subscriber is gone
+         */
+        boolean collected(Object target) {
+            return target == null && reference != null;
+        }
+    }
+}
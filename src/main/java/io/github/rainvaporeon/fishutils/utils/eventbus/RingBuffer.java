@@ -0,0 +1,107 @@
+package io.github.rainvaporeon.fishutils.utils.eventbus;
+
+import io.github.rainvaporeon.fishutils.utils.eventbus.events.Event;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded, preallocated multi-producer multi-consumer queue of events.
+ * <p></p>
+ * Every slot carries a sequence number telling whether it is ready to be
+ * written or read for the current lap, so producers and consumers only
+ * contend on claiming a position and never lock.
+ * @since 1.2.19
+ */
+final class RingBuffer {
+
+    private final Event[] events;
+    private final long[] postedAt;
+    private final AtomicLongArray sequences;
+    private final int mask;
+
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Creates a ring buffer
+     * @param capacity the minimum capacity, rounded up to a power of two
+     */
+    RingBuffer(int capacity) {
+        if(capacity <= 0 || capacity > 1 << 30) throw new IllegalArgumentException("capacity " + capacity + " out of range");
+        int size = Integer.highestOneBit(capacity);
+        if(size < capacity) size <<= 1;
+        this.events = new Event[size];
+        this.postedAt = new long[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for(int i = 0; i < size; i++) sequences.set(i, i);
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Gets the approximate amount of queued events
+     * @return the size
+     */
+    int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    /**
+     * Inserts the event if there is space
+     * @param event the event
+     * @param now the time of insertion, in nanoseconds
+     * @return false if the buffer is full
+     */
+    boolean offer(Event event, long now) {
+        long pos = tail.get();
+        while(true) {
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if(diff == 0) {
+                if(tail.compareAndSet(pos, pos + 1)) {
+                    events[index] = event;
+                    postedAt[index] = now;
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if(diff < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Removes the eldest event
+     * @param postedAt receives the time the event was inserted at, may be null
+     * @return the event, or null if the buffer is empty
+     */
+    Event poll(long[] postedAt) {
+        long pos = head.get();
+        while(true) {
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - (pos + 1);
+            if(diff == 0) {
+                if(head.compareAndSet(pos, pos + 1)) {
+                    Event event = events[index];
+                    if(postedAt != null) postedAt[0] = this.postedAt[index];
+                    events[index] = null;
+                    sequences.set(index, pos + mask + 1);
+                    return event;
+                }
+                pos = head.get();
+            } else if(diff < 0) {
+                return null;
+            } else {
+                pos = head.get();
+            }
+        }
+    }
+}
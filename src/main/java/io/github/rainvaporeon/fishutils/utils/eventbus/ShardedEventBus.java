@@ -0,0 +1,178 @@
+package io.github.rainvaporeon.fishutils.utils.eventbus;
+
+import io.github.rainvaporeon.fishutils.utils.eventbus.events.Event;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * An event bus that partitions events across single-threaded lanes.
+ * <p></p>
+ * Every event is routed by the key extracted from it to one of a fixed
+ * amount of lanes, each delivering its events on its own thread in the
+ * order they were fired. Events with equal keys are therefore always
+ * delivered in order, one at a time, while events with different keys
+ * may be delivered in parallel. Events without a key share the first lane.
+ * <p></p>
+ * Duplicate events are discarded on their lane, so that an event is only
+ * marked as received once it was handed to a lane.
+ * Buses hooked to this bus receive the event on its lane, after the
+ * subscribers of this bus.
+ * @since 1.2.19
+ */
+public class ShardedEventBus extends EventBus {
+
+    private static final AtomicInteger shardedCount = new AtomicInteger();
+
+    private final ExecutorService[] lanes;
+    private final Function<? super Event, ?> partitioner;
+
+    /**
+     * Creates a sharded event bus and starts its lanes
+     * @param lanes the amount of lanes
+     * @param partitioner extracts the partition key of an event, events
+     *                    are routed by the {@link Object#hashCode() hash code} of the key
+     * @param processDuplicates whether this bus should be able to
+     *                     receive the same event multiple times
+     * @apiNote the lane threads are daemon threads, and are
+     * stopped once {@link ShardedEventBus#shutdown()} is called.
+     */
+    public ShardedEventBus(int lanes, Function<? super Event, ?> partitioner, boolean processDuplicates) {
+        super(processDuplicates);
+        if(lanes <= 0) throw new IllegalArgumentException("at least one lane is required");
+        this.partitioner = Objects.requireNonNull(partitioner);
+        this.lanes = new ExecutorService[lanes];
+        int id = shardedCount.getAndIncrement();
+        for(int i = 0; i < lanes; i++) {
+            ThreadFactory factory = Thread.ofPlatform().daemon().name("EventBus-lane-" + id + "-" + i).factory();
+            this.lanes[i] = Executors.newSingleThreadExecutor(factory);
+        }
+    }
+
+    public ShardedEventBus(int lanes, Function<? super Event, ?> partitioner) {
+        this(lanes, partitioner, false);
+    }
+
+    /**
+     * Fires the event on its lane, discarding the completion
+     * @param event the event
+     * @apiNote errors re-thrown by the error handler are only visible
+     * through {@link ShardedEventBus#fireAsync(Event)}.
+     */
+    @Override
+    public void fire(Event event) {
+        fireAsync(event);
+    }
+
+    /**
+     * Fires the event on its lane
+     * @param event the event
+     * @return a future that completes once the subscribers and the hooked
+     * buses have handled the event, or completes exceptionally if the
+     * error handler threw.
+     */
+    public CompletableFuture<Void> fireAsync(Event event) {
+        // 1.2.19: Accepted on the lane, so that an event failing to be
+        // routed or submitted is not discarded as a duplicate afterwards
+        return CompletableFuture.runAsync(() -> {
+            if(!accept(event)) return;
+            dispatch(event);
+            propagate(event);
+        }, lanes[laneOf(event)]);
+    }
+
+    /**
+     * Fires a batch of events on their lanes, discarding the completion
+     * @param events the events
+     * @see ShardedEventBus#fireAllAsync(Collection)
+     */
+    @Override
+    public void fireAll(Collection<? extends Event> events) {
+        fireAllAsync(events);
+    }
+
+    /**
+     * Fires a batch of events on their lanes.
+     * <p></p>
+     * The batch is split by lane, keeping the order of the events, and
+     * every lane delivers its part as a single task. Hooked buses receive
+     * the part of each lane as a batch. Failures are passed to the error
+     * handler once per lane.
+     * @param events the events
+     * @return a future that completes once every lane has delivered its part
+     * @see EventBus#fireAll(Collection)
+     */
+    public CompletableFuture<Void> fireAllAsync(Collection<? extends Event> events) {
+        List<List<Event>> parts = new ArrayList<>(Collections.nCopies(lanes.length, null));
+        for(Event event : events) {
+            int lane = laneOf(event);
+            if(parts.get(lane) == null) parts.set(lane, new ArrayList<>());
+            parts.get(lane).add(event);
+        }
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+        for(int i = 0; i < lanes.length; i++) {
+            List<Event> part = parts.get(i);
+            if(part == null) continue;
+            futures.add(CompletableFuture.runAsync(() -> {
+                List<Event> accepted = signAll(part);
+                if(accepted.isEmpty()) return;
+                deliverAll(accepted);
+                propagateAll(accepted);
+            }, lanes[i]));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Gets the lane an event is delivered on
+     * @param event the event
+     * @return the index of the lane
+     */
+    public int laneOf(Event event) {
+        Object key = partitioner.apply(event);
+        if(key == null) return 0;
+        int h = key.hashCode();
+        // spreads the higher bits, as keys often only differ in them
+        return Math.floorMod(h ^ (h >>> 16), lanes.length);
+    }
+
+    /**
+     * Gets the amount of lanes
+     * @return the lane count
+     */
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * Stops the lanes. Events already fired are still delivered.
+     */
+    public void shutdown() {
+        for(ExecutorService lane : lanes) lane.shutdown();
+    }
+
+    /**
+     * Waits for the lanes to deliver every event fired before {@link ShardedEventBus#shutdown()}
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return true if every lane terminated
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for(ExecutorService lane : lanes) {
+            if(!lane.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) return false;
+        }
+        return true;
+    }
+}
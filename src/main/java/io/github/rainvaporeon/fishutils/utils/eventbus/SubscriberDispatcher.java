@@ -0,0 +1,88 @@
+package io.github.rainvaporeon.fishutils.utils.eventbus;
+
+import io.github.rainvaporeon.fishutils.utils.eventbus.events.Event;
+import io.github.rainvaporeon.fishutils.utils.eventbus.events.EventBusSubscriber;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A dispatcher generated at compile time for a subscriber type.
+ * <p></p>
+ * Dispatchers are generated by {@link io.github.rainvaporeon.fishutils.utils.eventbus.processing.SubscriberProcessor}
+ * for every type declaring methods annotated with {@link EventBusSubscriber}, and are found
+ * by the bus through {@link java.util.ServiceLoader}. Subscribing an instance of a type
+ * with a dispatcher neither scans nor invokes its methods reflectively.
+ * @apiNote this interface is implemented by generated code, and is not meant
+ * to be implemented manually.
+ * @since 1.2.19
+ */
+public interface SubscriberDispatcher {
+
+    /**
+     * The suffix appended to the binary name of a subscriber type
+     * to get the name of its dispatcher
+     */
+    String SUFFIX = "$$EventDispatcher";
+
+    /**
+     * Gets the subscriber type this dispatcher was generated for
+     * @return the type
+     */
+    Class<?> type();
+
+    /**
+     * Gets every subscribing method declared by the type
+     * @return the handlers, in order of declaration
+     */
+    List<Handler> handlers();
+
+    /**
+     * Invokes a subscribing method directly
+     */
+    @FunctionalInterface
+    interface Invoker {
+        /**
+         * Invokes the method
+         * @param target the subscriber, or null for static methods
+         * @param event the event
+         * @return the returned value, or null if the method returns {@code void}
+         * @throws Throwable anything thrown by the method
+         */
+        Object invoke(Object target, Event event) throws Throwable;
+    }
+
+    /**
+     * A subscribing method, as declared in source
+     */
+    final class Handler {
+        final String name;
+        final Class<? extends Event> parameterType;
+        final Class<?> returnType;
+        final EventBusSubscriber.Priority priority;
+        final Class<? extends Event>[] value;
+        final Class<? extends Event>[] only;
+        final Invoker invoker;
+
+        /**
+         * Creates a handler
+         * @param name the method name
+         * @param parameterType the event type of the parameter
+         * @param returnType the return type
+         * @param priority {@link EventBusSubscriber#priority()}
+         * @param value {@link EventBusSubscriber#value()}
+         * @param only {@link EventBusSubscriber#only()}
+         * @param invoker invokes the method
+         */
+        public Handler(String name, Class<? extends Event> parameterType, Class<?> returnType, EventBusSubscriber.Priority priority,
+                       Class<? extends Event>[] value, Class<? extends Event>[] only, Invoker invoker) {
+            this.name = Objects.requireNonNull(name);
+            this.parameterType = Objects.requireNonNull(parameterType);
+            this.returnType = Objects.requireNonNull(returnType);
+            this.priority = Objects.requireNonNull(priority);
+            this.value = value.clone();
+            this.only = only.clone();
+            this.invoker = Objects.requireNonNull(invoker);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package io.github.rainvaporeon.fishutils.utils.eventbus;
+
+import io.github.rainvaporeon.fishutils.utils.eventbus.events.Event;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A direct invoker for a subscribing method.
+ * <p></p>
+ * Invokers are generated once when the dispatch table of a subscriber
+ * type is built, using {@link LambdaMetafactory} so that delivering an
+ * event is a plain interface call instead of {@link Method#invoke(Object, Object...)}.
+ * The generated classes implement the {@code java.util.function} interfaces,
+ * as they are defined alongside the subscriber and cannot access this type.
+ * Any exception thrown by the subscribing method is thrown as-is.
+ * @since 1.2.19
+ */
+@FunctionalInterface
+interface SubscriberInvoker {
+
+    /**
+     * Invokes the subscribing method
+     * @param target the subscriber instance, or null for static methods
+     * @param event the event
+     * @return the returned value, or null if the method returns {@code void}
+     * @throws Throwable anything thrown by the method
+     */
+    Object invoke(Object target, Event event) throws Throwable;
+
+    /**
+     * Creates an invoker for the method
+     * @param method the method, already made accessible
+     * @return the invoker
+     */
+    @SuppressWarnings("unchecked")
+    static SubscriberInvoker of(Method method) {
+        Class<?> declaring = method.getDeclaringClass();
+        Class<?> parameter = method.getParameterTypes()[0];
+        Class<?> returnType = method.getReturnType();
+        boolean isStatic = Modifier.isStatic(method.getModifiers());
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(declaring, MethodHandles.lookup());
+            MethodHandle handle = lookup.unreflect(method);
+            if(isStatic) {
+                MethodType instantiated = MethodType.methodType(returnType, parameter);
+                if(returnType == void.class) {
+                    Consumer<Event> consumer = (Consumer<Event>) LambdaMetafactory.metafactory(lookup, "accept",
+                            MethodType.methodType(Consumer.class), MethodType.methodType(void.class, Object.class),
+                            handle, instantiated).getTarget().invokeExact();
+                    return (target, event) -> {
+                        consumer.accept(event);
+                        return null;
+                    };
+                }
+                Function<Event, Object> function = (Function<Event, Object>) LambdaMetafactory.metafactory(lookup, "apply",
+                        MethodType.methodType(Function.class), MethodType.methodType(Object.class, Object.class),
+                        handle, instantiated.wrap()).getTarget().invokeExact();
+                return (target, event) -> function.apply(event);
+            }
+            MethodType instantiated = MethodType.methodType(returnType, declaring, parameter);
+            if(returnType == void.class) {
+                BiConsumer<Object, Event> consumer = (BiConsumer<Object, Event>) LambdaMetafactory.metafactory(lookup, "accept",
+                        MethodType.methodType(BiConsumer.class), MethodType.methodType(void.class, Object.class, Object.class),
+                        handle, instantiated).getTarget().invokeExact();
+                return (target, event) -> {
+                    consumer.accept(target, event);
+                    return null;
+                };
+            }
+            BiFunction<Object, Event, Object> function = (BiFunction<Object, Event, Object>) LambdaMetafactory.metafactory(lookup, "apply",
+                    MethodType.methodType(BiFunction.class), MethodType.methodType(Object.class, Object.class, Object.class),
+                    handle, instantiated.wrap()).getTarget().invokeExact();
+            return function::apply;
+        } catch (Throwable t) {
+            // The method is not reachable for the metafactory (i.e. a non-open module),
+            // fall back to the method handle of the accessible method.
+            return fallback(method, isStatic);
+        }
+    }
+
+    private static SubscriberInvoker fallback(Method method, boolean isStatic) {
+        MethodHandle handle;
+        try {
+            handle = MethodHandles.lookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw new InternalError("Failed to unreflect " + method + ": ", e);
+        }
+        if(isStatic) handle = MethodHandles.dropArguments(handle, 0, Object.class);
+        MethodHandle invoker = handle.asType(MethodType.methodType(Object.class, Object.class, Event.class));
+        return invoker::invokeExact;
+    }
+}
@@ -0,0 +1,229 @@
+package io.github.rainvaporeon.fishutils.utils.eventbus;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The subscribers of an event bus, in order of registration.
+ * <p></p>
+ * Subscribers are kept in a skip list ordered by registration, and
+ * indexed by equality (or identity, for weak subscribers) for removal,
+ * so that registering and removing a subscriber does not copy nor scan
+ * every other subscriber.
+ * <p></p>
+ * Weak subscribers are only weakly reachable from the registry, and are
+ * purged in bulk once they were collected.
+ * @since 1.2.19
+ */
+final class SubscriberRegistry implements Iterable<Object> {
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Registration number mapped to the registration
+     */
+    private final ConcurrentSkipListMap<Long, Entry> entries = new ConcurrentSkipListMap<>();
+
+    /**
+     * Strong subscribers mapped to their registrations; the queues are only accessed while computing
+     */
+    private final ConcurrentHashMap<Object, ArrayDeque<Entry>> strong = new ConcurrentHashMap<>();
+
+    /**
+     * Weak subscribers mapped to their registrations; the queues are only accessed while computing
+     */
+    private final ConcurrentHashMap<WeakKey, ArrayDeque<Entry>> weak = new ConcurrentHashMap<>();
+
+    private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+
+    SubscriberRegistry() {}
+
+    Entry add(Object object) {
+        Entry entry = new Entry(sequence.getAndIncrement(), object, null);
+        strong.compute(object, (k, v) -> append(v, entry));
+        entries.put(entry.sequence, entry);
+        size.incrementAndGet();
+        return entry;
+    }
+
+    Entry addWeak(Object object) {
+        WeakKey key = new WeakKey(object, collected);
+        Entry entry = new Entry(sequence.getAndIncrement(), null, key);
+        weak.compute(key, (k, v) -> append(v, entry));
+        entries.put(entry.sequence, entry);
+        size.incrementAndGet();
+        return entry;
+    }
+
+    /**
+     * Removes the eldest registration of the object, strong registrations
+     * are matched by equality and weak ones by identity.
+     * @param object the subscriber
+     * @return the removed registration, or null if there was none
+     */
+    Entry remove(Object object) {
+        Entry[] removed = new Entry[1];
+        strong.computeIfPresent(object, (k, v) -> poll(v, removed));
+        if(removed[0] == null) weak.computeIfPresent(new WeakKey(object, null), (k, v) -> poll(v, removed));
+        if(removed[0] == null) return null;
+        removed[0].removed = true;
+        entries.remove(removed[0].sequence);
+        size.decrementAndGet();
+        return removed[0];
+    }
+
+    /**
+     * Removes every weak subscriber that was collected
+     * @return the removed registrations
+     */
+    List<Entry> expunge() {
+        List<Entry> expunged = null;
+        Reference<?> reference;
+        while((reference = collected.poll()) != null) {
+            ArrayDeque<Entry> queue = weak.remove((WeakKey) reference);
+            if(queue == null) continue;
+            if(expunged == null) expunged = new ArrayList<>();
+            for(Entry entry : queue) {
+                entry.removed = true;
+                entries.remove(entry.sequence);
+                size.decrementAndGet();
+                expunged.add(entry);
+            }
+        }
+        return expunged == null ? List.of() : expunged;
+    }
+
+    /**
+     * Gets the amount of registrations, including weak subscribers
+     * that were collected but not yet purged
+     * @return the size
+     */
+    public int size() {
+        return size.get();
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Gets the registrations in order
+     * @return the registrations
+     */
+    Iterable<Entry> entries() {
+        return entries.values();
+    }
+
+    /**
+     * Iterates the live subscribers in order of registration
+     * @return the iterator
+     */
+    @Override
+    public Iterator<Object> iterator() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        return new Iterator<>() {
+            private Object next;
+
+            @Override
+            public boolean hasNext() {
+                while(next == null && iterator.hasNext()) next = iterator.next().get();
+                return next != null;
+            }
+
+            @Override
+            public Object next() {
+                if(!hasNext()) throw new NoSuchElementException();
+                Object ret = next;
+                next = null;
+                return ret;
+            }
+        };
+    }
+
+    private static ArrayDeque<Entry> append(ArrayDeque<Entry> queue, Entry entry) {
+        if(queue == null) queue = new ArrayDeque<>(1);
+        queue.add(entry);
+        return queue;
+    }
+
+    private static ArrayDeque<Entry> poll(ArrayDeque<Entry> queue, Entry[] removed) {
+        removed[0] = queue.poll();
+        return queue.isEmpty() ? null : queue;
+    }
+
+    /**
+     * A single registration
+     */
+    static final class Entry {
+        final long sequence;
+        private final Object strong;
+        private final WeakKey weak;
+        private volatile boolean removed;
+
+        private Entry(long sequence, Object strong, WeakKey weak) {
+            this.sequence = sequence;
+            this.strong = strong;
+            this.weak = weak;
+        }
+
+        /**
+         * Gets the subscriber
+         * @return the subscriber, or null if it was weak and got collected
+         */
+        Object get() {
+            return weak == null ? strong : weak.get();
+        }
+
+        /**
+         * Checks whether this registration was removed from the registry
+         * @return true once removed
+         */
+        boolean removed() {
+            return removed;
+        }
+
+        /**
+         * Gets the reference to a weak subscriber
+         * @return the reference, or null if the subscriber is strongly held
+         */
+        WeakReference<Object> reference() {
+            return weak;
+        }
+    }
+
+    /**
+     * A weak reference compared by the identity of its referent
+     */
+    private static final class WeakKey extends WeakReference<Object> {
+        private final int hash;
+
+        private WeakKey(Object referent, ReferenceQueue<Object> queue) {
+            super(referent, queue);
+            this.hash = System.identityHashCode(referent);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if(this == object) return true;
+            if(!(object instanceof WeakKey key)) return false;
+            Object referent = get();
+            return referent != null && referent == key.get();
+        }
+    }
+}
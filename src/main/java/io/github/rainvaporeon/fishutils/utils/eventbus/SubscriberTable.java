@@ -0,0 +1,272 @@
+package io.github.rainvaporeon.fishutils.utils.eventbus;
+
+import io.github.rainvaporeon.fishutils.utils.eventbus.events.EventBusSubscriber;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * A precompiled dispatch table of a subscriber type.
+ * <p></p>
+ * The table is built once per subscriber class, holding all methods
+ * annotated with {@link EventBusSubscriber} sorted by their priority.
+ * The handlers interested in a certain event class are resolved once
+ * and reused for every later event of that class.
+ * <p></p>
+ * Tables of subscriber instances are built from the {@link SubscriberDispatcher}
+ * generated for their class if there is one, and from reflection otherwise.
+ * @since 1.2.19
+ */
+final class SubscriberTable {
+
+    private static final Handler[] EMPTY = new Handler[0];
+
+    private static final int MAX_BROKEN_DISPATCHERS = 64;
+
+    // Class loaders mapped to the names of their dispatchers, names do not keep the loaders reachable
+    private static final Map<ClassLoader, Set<String>> DISPATCHERS = new WeakHashMap<>();
+
+    // Tables for subscriber instances, which may use any declared method
+    private static final ClassValue<SubscriberTable> INSTANCE_TABLES = new ClassValue<>() {
+        @Override
+        protected SubscriberTable computeValue(Class<?> type) {
+            SubscriberDispatcher dispatcher = dispatcher(type);
+            return dispatcher == null ? new SubscriberTable(type.getDeclaredMethods()) : new SubscriberTable(dispatcher);
+        }
+    };
+
+    // Tables for subscribing classes, which may only use public methods
+    private static final ClassValue<SubscriberTable> STATIC_TABLES = new ClassValue<>() {
+        @Override
+        protected SubscriberTable computeValue(Class<?> type) {
+            return new SubscriberTable(type.getMethods());
+        }
+    };
+
+    /**
+     * All handlers of this subscriber type, sorted by priority
+     */
+    private final Handler[] handlers;
+
+    /**
+     * Whether this table was built from a generated dispatcher
+     */
+    final boolean generated;
+
+    /**
+     * Event classes mapped to the handlers accepting them
+     */
+    private final ClassValue<Handler[]> resolved = new ClassValue<>() {
+        @Override
+        protected Handler[] computeValue(Class<?> eventClass) {
+            return resolve(eventClass);
+        }
+    };
+
+    private SubscriberTable(Method[] methods) {
+        List<Handler> handlers = new ArrayList<>();
+        EventBusSubscriber a;
+        for(Method method : methods) {
+            if((a = method.getAnnotation(EventBusSubscriber.class)) == null || method.getParameterCount() != 1) continue;
+            method.setAccessible(true);
+            handlers.add(new Handler(method, a));
+        }
+        this.handlers = sort(handlers);
+        this.generated = false;
+    }
+
+    private SubscriberTable(SubscriberDispatcher dispatcher) {
+        List<Handler> handlers = new ArrayList<>();
+        for(SubscriberDispatcher.Handler handler : dispatcher.handlers()) {
+            handlers.add(new Handler(dispatcher.type(), handler));
+        }
+        this.handlers = sort(handlers);
+        this.generated = true;
+    }
+
+    private static Handler[] sort(List<Handler> handlers) {
+        // 1.2.15: Added EventBus priority
+        // the lower the priority, the higher the ordinal.
+        handlers.sort(Comparator.comparingInt(h -> h.priority.ordinal()));
+        return handlers.toArray(EMPTY);
+    }
+
+    /**
+     * Finds the dispatcher generated for the type, only that dispatcher
+     * is instantiated, as a service provider would be.
+     * @param type the subscriber type
+     * @return the dispatcher, or null if the type has none
+     */
+    private static SubscriberDispatcher dispatcher(Class<?> type) {
+        ClassLoader loader = type.getClassLoader();
+        if(loader == null) return null;
+        String name = type.getName() + SubscriberDispatcher.SUFFIX;
+        if(!dispatchers(loader).contains(name)) return null;
+        try {
+            SubscriberDispatcher dispatcher = Class.forName(name, true, loader).asSubclass(SubscriberDispatcher.class)
+                    .getConstructor().newInstance();
+            return dispatcher.type() == type ? dispatcher : null;
+        } catch (ReflectiveOperationException | LinkageError | ClassCastException e) {
+            // a broken dispatcher should not prevent subscribing, reflection still works
+            return null;
+        }
+    }
+
+    /**
+     * Gets the names of the dispatchers registered with a class loader,
+     * the services are only looked up once per class loader.
+     * @param loader the class loader
+     * @return the binary names
+     */
+    private static Set<String> dispatchers(ClassLoader loader) {
+        synchronized(DISPATCHERS) {
+            Set<String> ret = DISPATCHERS.get(loader);
+            if(ret == null) DISPATCHERS.put(loader, ret = lookUpDispatchers(loader));
+            return ret;
+        }
+    }
+
+    private static Set<String> lookUpDispatchers(ClassLoader loader) {
+        Set<String> ret = new HashSet<>();
+        Iterator<ServiceLoader.Provider<SubscriberDispatcher>> iterator = ServiceLoader.load(SubscriberDispatcher.class, loader).stream().iterator();
+        // stops in case the service loader keeps failing on the same entry
+        for(int failures = 0; failures < MAX_BROKEN_DISPATCHERS;) {
+            try {
+                if(!iterator.hasNext()) break;
+                ret.add(iterator.next().type().getName());
+            } catch (ServiceConfigurationError e) {
+                // skips the entry, such as the stale name of a removed dispatcher
+                failures++;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Gets the dispatch table for a subscriber
+     * @param o the subscriber, either an instance or a class
+     * @return the table, built if absent
+     */
+    static SubscriberTable of(Object o) {
+        return o instanceof Class<?> cls ? STATIC_TABLES.get(cls) : INSTANCE_TABLES.get(o.getClass());
+    }
+
+    /**
+     * Gets every handler of this subscriber type
+     * @return the handlers, sorted by priority
+     */
+    Handler[] handlers() {
+        return handlers;
+    }
+
+    /**
+     * Gets the handlers accepting the given event class
+     * @param eventClass the concrete event class
+     * @return the handlers, sorted by priority
+     */
+    Handler[] handlersFor(Class<?> eventClass) {
+        return resolved.get(eventClass);
+    }
+
+    private Handler[] resolve(Class<?> eventClass) {
+        List<Handler> ret = new ArrayList<>();
+        for(Handler handler : handlers) {
+            if(handler.accepts(eventClass)) ret.add(handler);
+        }
+        return ret.isEmpty() ? EMPTY : ret.toArray(EMPTY);
+    }
+
+    /**
+     * A single subscribing method
+     */
+    static final class Handler {
+        private final Class<?> declaring;
+        private final String name;
+        private volatile Method method;
+        final SubscriberInvoker invoker;
+        final EventBusSubscriber.Priority priority;
+        /**
+         * Whether the method may return {@code true} to cancel the event
+         */
+        final boolean cancels;
+        private final Class<?> parameterType;
+        private final Class<?>[] value;
+        private final Class<?>[] only;
+
+        private Handler(Method method, EventBusSubscriber a) {
+            this.declaring = method.getDeclaringClass();
+            this.name = method.getName();
+            this.method = method;
+            this.invoker = SubscriberInvoker.of(method);
+            this.priority = a.priority();
+            Class<?> returnType = method.getReturnType();
+            this.cancels = returnType == boolean.class || returnType.isAssignableFrom(Boolean.class);
+            this.parameterType = method.getParameterTypes()[0];
+            this.value = a.value();
+            this.only = a.only();
+        }
+
+        private Handler(Class<?> declaring, SubscriberDispatcher.Handler handler) {
+            this.declaring = declaring;
+            this.name = handler.name;
+            this.invoker = handler.invoker::invoke;
+            this.priority = handler.priority;
+            Class<?> returnType = handler.returnType;
+            this.cancels = returnType == boolean.class || returnType.isAssignableFrom(Boolean.class);
+            this.parameterType = handler.parameterType;
+            this.value = handler.value;
+            this.only = handler.only;
+        }
+
+        /**
+         * Gets the subscribing method, which is only looked up
+         * on demand for handlers of generated dispatchers
+         * @return the method
+         */
+        Method method() {
+            Method method = this.method;
+            if(method == null) {
+                try {
+                    this.method = method = declaring.getDeclaredMethod(name, parameterType);
+                } catch (NoSuchMethodException e) {
+                    throw new IllegalStateException("dispatcher of " + declaring + " is out of date, missing " + name, e);
+                }
+            }
+            return method;
+        }
+
+        /**
+         * Whether this handler has any {@code value()} or {@code only()} filter
+         * @return true if filtered
+         */
+        boolean filtered() {
+            return value.length != 0 || only.length != 0;
+        }
+
+        /**
+         * Checks whether this handler should receive events of the class
+         * @param c the concrete event class
+         * @return true if the event should be delivered
+         */
+        boolean accepts(Class<?> c) {
+            if(!parameterType.isAssignableFrom(c)) return false;
+            if(!filtered()) return true;
+            for(Class<?> clazz : only) {
+                if(clazz == c) return true;
+            }
+            for(Class<?> clazz : value) {
+                if(clazz.isAssignableFrom(c)) return true;
+            }
+            return false;
+        }
+    }
+}
@@ -2,52 +2,140 @@ package io.github.rainvaporeon.fishutils.utils.eventbus.events;
 
 import io.github.rainvaporeon.fishutils.utils.eventbus.Secret;
 
-import java.util.HashSet;
-import java.util.Set;
-import java.util.UUID;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 
 /**
  * The common class for all events
  */
 public abstract class Event {
+    private static final VarHandle SIGNATURES;
+    private static final VarHandle OVERFLOW;
+
     /**
      * The event buses' signatures, to prevent the same event
-     * from arriving to a bus multiple times
+     * from arriving to a bus multiple times.
+     * <p></p>
+     * Bit {@code n} is set once the bus with signature {@code n} received this event,
+     * signatures past the first 64 are stored in {@link Event#overflow}, in blocks
+     * sorted by their index. Only the blocks of the buses that received this event
+     * exist, so its size does not depend on how many buses were ever created.
      */
-    private final Set<UUID> signatures = new HashSet<>();
+    @SuppressWarnings("unused") // accessed with SIGNATURES
+    private volatile long signatures;
 
-    private final Object mutex = new Object();
+    // 1.2.19: Replaced UUID set with bitset
+    @SuppressWarnings("unused") // accessed with OVERFLOW
+    private volatile Segment[] overflow;
 
     static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            SIGNATURES = lookup.findVarHandle(Event.class, "signatures", long.class);
+            OVERFLOW = lookup.findVarHandle(Event.class, "overflow", Segment[].class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+
         Secret.setAccessor(new EventBusAccessor() {
             @Override
-            public void sign(Event event, UUID identifier) {
-                event.sign(identifier);
+            public boolean sign(Event event, int signature) {
+                return event.sign(signature);
             }
 
             @Override
-            public boolean signed(Event event, UUID identifier) {
-                return event.isSigned(identifier);
+            public boolean signed(Event event, int signature) {
+                return event.isSigned(signature);
             }
         });
     }
 
     /**
      * signs this event
-     * @param identifier the bus identifier
+     * @param signature the bus signature
+     * @return true if this event was not signed by the bus before
      */
-    private void sign(UUID identifier) {
-        synchronized (mutex) {
-            this.signatures.add(identifier);
+    private boolean sign(int signature) {
+        if(signature < Long.SIZE) {
+            long bit = 1L << signature;
+            return ((long) SIGNATURES.getAndBitwiseOr(this, bit) & bit) == 0;
         }
+        int index = signature - Long.SIZE;
+        return segment(index / Segment.BITS, true).set(index % Segment.BITS);
     }
 
     /**
      * checks for sign status
-     * @param identifier the bus identifier
-     * @return true if the identifier is present on the record
+     * @param signature the bus signature
+     * @return true if the signature is present on the record
+     */
+    private boolean isSigned(int signature) {
+        if(signature < Long.SIZE) {
+            return (signatures & (1L << signature)) != 0;
+        }
+        int index = signature - Long.SIZE;
+        Segment segment = segment(index / Segment.BITS, false);
+        return segment != null && segment.get(index % Segment.BITS);
+    }
+
+    // Gets the n-th overflow segment, creating it if requested
+    private Segment segment(int n, boolean create) {
+        Segment[] segments = overflow;
+        while(true) {
+            int at = segments == null ? -1 : indexOf(segments, n);
+            if(at >= 0) return segments[at];
+            if(!create) return null;
+            // the array is copied rather than written to, so a segment
+            // in the current array is in every later one as well
+            int insert = -at - 1, length = segments == null ? 0 : segments.length;
+            Segment[] next = new Segment[length + 1];
+            if(segments != null) {
+                System.arraycopy(segments, 0, next, 0, insert);
+                System.arraycopy(segments, insert, next, insert + 1, length - insert);
+            }
+            Segment created = new Segment(n);
+            next[insert] = created;
+            Segment[] witness = (Segment[]) OVERFLOW.compareAndExchange(this, segments, next);
+            if(witness == segments) return created;
+            segments = witness;
+        }
+    }
+
+    // the index of the segment of a block, or (-(insertion point) - 1) if absent
+    private static int indexOf(Segment[] segments, int block) {
+        int low = 0, high = segments.length - 1;
+        while(low <= high) {
+            int mid = (low + high) >>> 1;
+            int value = segments[mid].block;
+            if(value < block) low = mid + 1;
+            else if(value > block) high = mid - 1;
+            else return mid;
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * A fixed block of signatures; segments are never replaced once
+     * published, so a set bit is never lost to a concurrent resize.
      */
-    private boolean isSigned(UUID identifier) {
-        return this.signatures.contains(identifier);
+    private static final class Segment {
+        private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+        private static final int BITS = 1024;
+
+        private final int block;
+        private final long[] words = new long[BITS / Long.SIZE];
+
+        private Segment(int block) {
+            this.block = block;
+        }
+
+        private boolean set(int index) {
+            long bit = 1L << index;
+            return ((long) WORDS.getAndBitwiseOr(words, index >>> 6, bit) & bit) == 0;
+        }
+
+        private boolean get(int index) {
+            return ((long) WORDS.getVolatile(words, index >>> 6) & (1L << index)) != 0;
+        }
     }
 }
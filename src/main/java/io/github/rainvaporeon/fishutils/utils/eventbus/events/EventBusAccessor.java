@@ -2,10 +2,12 @@ package io.github.rainvaporeon.fishutils.utils.eventbus.events;
 
 import io.github.rainvaporeon.fishutils.utils.eventbus.events.Event;
 
-import java.util.UUID;
-
 public interface EventBusAccessor {
-    void sign(Event event, UUID identifier);
+    /**
+     * Signs the event
+     * @return true if the event was not signed with this signature before
+     */
+    boolean sign(Event event, int signature);
 
-    boolean signed(Event event, UUID identifier);
+    boolean signed(Event event, int signature);
 }
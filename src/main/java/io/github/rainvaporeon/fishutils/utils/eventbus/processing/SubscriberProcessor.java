@@ -0,0 +1,280 @@
+package io.github.rainvaporeon.fishutils.utils.eventbus.processing;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates a {@code SubscriberDispatcher} for every class declaring
+ * methods annotated with {@code EventBusSubscriber}, and registers them
+ * as services so that the bus can find them at runtime.
+ * <p></p>
+ * The subscribing methods are also validated here with the same rules
+ * the bus checks while subscribing, reporting invalid ones as compile errors.
+ * <p></p>
+ * No dispatcher is generated for classes the generated code cannot access,
+ * namely local, anonymous and private nested classes and classes with
+ * private subscribing methods; such classes are still dispatched through
+ * reflection.
+ * @apiNote to use this processor, add this library to the annotation processor path.
+ * @since 1.2.19
+ */
+@SupportedAnnotationTypes(SubscriberProcessor.ANNOTATION)
+public class SubscriberProcessor extends AbstractProcessor {
+
+    static final String ANNOTATION = "io.github.rainvaporeon.fishutils.utils.eventbus.events.EventBusSubscriber";
+    private static final String EVENT = "io.github.rainvaporeon.fishutils.utils.eventbus.events.Event";
+    private static final String DISPATCHER = "io.github.rainvaporeon.fishutils.utils.eventbus.SubscriberDispatcher";
+    private static final String SUFFIX = "$$EventDispatcher";
+    private static final String SERVICE = "META-INF/services/" + DISPATCHER;
+
+    /**
+     * Binary names of every dispatcher generated in this compilation
+     */
+    private final Set<String> generated = new LinkedHashSet<>();
+
+    private Elements elements;
+    private Types types;
+    private Filer filer;
+    private Messager messager;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment env) {
+        super.init(env);
+        this.elements = env.getElementUtils();
+        this.types = env.getTypeUtils();
+        this.filer = env.getFiler();
+        this.messager = env.getMessager();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        if(round.processingOver()) {
+            if(!generated.isEmpty()) writeServices();
+            return true;
+        }
+        TypeElement annotation = elements.getTypeElement(ANNOTATION);
+        if(annotation == null) return true;
+        // declaring types mapped to their subscribing methods, in order of declaration
+        Map<TypeElement, List<ExecutableElement>> subscribers = new LinkedHashMap<>();
+        for(Element element : round.getElementsAnnotatedWith(annotation)) {
+            if(element.getKind() != ElementKind.METHOD) continue;
+            subscribers.computeIfAbsent((TypeElement) element.getEnclosingElement(), k -> new ArrayList<>())
+                    .add((ExecutableElement) element);
+        }
+        subscribers.forEach(this::process);
+        // claimed, as no other processor handles the annotation
+        return true;
+    }
+
+    private void process(TypeElement type, List<ExecutableElement> methods) {
+        boolean valid = true;
+        for(ExecutableElement method : methods) valid &= check(method);
+        if(!valid || !accessible(type)) return;
+        for(ExecutableElement method : methods) {
+            if(method.getModifiers().contains(Modifier.PRIVATE)) {
+                messager.printMessage(Diagnostic.Kind.NOTE, "private subscribing method, " + type + " is dispatched reflectively", method);
+                return;
+            }
+        }
+        String name = elements.getBinaryName(type) + SUFFIX;
+        try {
+            write(type, methods, name);
+            generated.add(name);
+        } catch (IOException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "failed to write dispatcher " + name + ": " + e, type);
+        }
+    }
+
+    // Mirrors EventBus#check(Object)
+    private boolean check(ExecutableElement method) {
+        int cnt = method.getParameters().size();
+        if(cnt != 1) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "annotated method has " + cnt + " parameters, expected 1", method);
+            return false;
+        }
+        TypeMirror event = types.erasure(elements.getTypeElement(EVENT).asType());
+        TypeMirror c = types.erasure(method.getParameters().get(0).asType());
+        if(!types.isAssignable(c, event)) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "class " + c + " is not an instance of Event", method);
+            return false;
+        }
+        boolean valid = true;
+        for(TypeMirror clazz : classes(method, "value")) valid &= checkFilter(method, clazz, c, event);
+        for(TypeMirror clazz : classes(method, "only")) valid &= checkFilter(method, clazz, c, event);
+        return valid;
+    }
+
+    private boolean checkFilter(ExecutableElement method, TypeMirror clazz, TypeMirror c, TypeMirror event) {
+        clazz = types.erasure(clazz);
+        if(!types.isAssignable(clazz, event)) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "class " + clazz + " in annotated member is not an event type", method);
+            return false;
+        }
+        // listening to other classes other than parent is a no no
+        if(!types.isAssignable(clazz, c)) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "class " + clazz + " is incompatible for listening event type " + c, method);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a dispatcher in the same package can reference the type,
+     * and whether the bus would ever dispatch to its declared methods.
+     */
+    private boolean accessible(TypeElement type) {
+        ElementKind kind = type.getKind();
+        if(kind != ElementKind.CLASS && kind != ElementKind.ENUM && kind != ElementKind.RECORD) return false;
+        if(type.getModifiers().contains(Modifier.ABSTRACT)) return false;
+        for(Element e = type; e instanceof TypeElement t; e = e.getEnclosingElement()) {
+            NestingKind nesting = t.getNestingKind();
+            if(nesting == NestingKind.LOCAL || nesting == NestingKind.ANONYMOUS) return false;
+            if(t.getModifiers().contains(Modifier.PRIVATE)) {
+                messager.printMessage(Diagnostic.Kind.NOTE, "private class, " + type + " is dispatched reflectively", type);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void write(TypeElement type, List<ExecutableElement> methods, String binaryName) throws IOException {
+        PackageElement pkg = elements.getPackageOf(type);
+        String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        String simpleName = packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1);
+        String typeName = type.getQualifiedName().toString();
+
+        StringBuilder source = new StringBuilder();
+        if(!packageName.isEmpty()) source.append("package ").append(packageName).append(";\n\n");
+        source.append("// Generated by ").append(SubscriberProcessor.class.getName()).append(", do not edit\n")
+              .append("@SuppressWarnings({\"rawtypes\", \"unchecked\", \"cast\"})\n")
+              .append("public final class ").append(simpleName).append(" implements ").append(DISPATCHER).append(" {\n\n")
+              .append("    private static final java.util.List<").append(DISPATCHER).append(".Handler> HANDLERS = java.util.List.of(");
+        for(int i = 0; i < methods.size(); i++) {
+            source.append(i == 0 ? "\n" : ",\n");
+            handler(source, typeName, methods.get(i));
+        }
+        source.append("\n    );\n\n")
+              .append("    @Override\n")
+              .append("    public Class<?> type() {\n")
+              .append("        return ").append(typeName).append(".class;\n")
+              .append("    }\n\n")
+              .append("    @Override\n")
+              .append("    public java.util.List<").append(DISPATCHER).append(".Handler> handlers() {\n")
+              .append("        return HANDLERS;\n")
+              .append("    }\n")
+              .append("}\n");
+
+        try (Writer writer = filer.createSourceFile(packageName.isEmpty() ? simpleName : packageName + "." + simpleName, type).openWriter()) {
+            writer.write(source.toString());
+        }
+    }
+
+    private void handler(StringBuilder source, String typeName, ExecutableElement method) {
+        String parameter = types.erasure(method.getParameters().get(0).asType()).toString();
+        TypeMirror returnType = method.getReturnType();
+        boolean isVoid = returnType.getKind() == TypeKind.VOID;
+        String receiver = method.getModifiers().contains(Modifier.STATIC) ? typeName : "((" + typeName + ") target)";
+        String call = receiver + "." + method.getSimpleName() + "((" + parameter + ") event)";
+
+        source.append("            new ").append(DISPATCHER).append(".Handler(\"").append(method.getSimpleName()).append("\", ")
+              .append(parameter).append(".class, ")
+              .append(isVoid ? "void" : types.erasure(returnType).toString()).append(".class, ")
+              .append(ANNOTATION).append(".Priority.").append(priority(method)).append(",\n")
+              .append("                    ").append(array(classes(method, "value"))).append(", ")
+              .append(array(classes(method, "only"))).append(",\n")
+              .append("                    (target, event) -> ")
+              .append(isVoid ? "{ " + call + "; return null; }" : call).append(")");
+    }
+
+    private String array(List<TypeMirror> classes) {
+        StringBuilder ret = new StringBuilder("new Class[] {");
+        for(int i = 0; i < classes.size(); i++) {
+            if(i != 0) ret.append(", ");
+            ret.append(types.erasure(classes.get(i))).append(".class");
+        }
+        return ret.append("}").toString();
+    }
+
+    private String priority(ExecutableElement method) {
+        return ((VariableElement) value(method, "priority").getValue()).getSimpleName().toString();
+    }
+
+    // class values have to be read from the mirror, as they are not loaded
+    @SuppressWarnings("unchecked")
+    private List<TypeMirror> classes(ExecutableElement method, String name) {
+        List<TypeMirror> ret = new ArrayList<>();
+        for(AnnotationValue value : (List<? extends AnnotationValue>) value(method, name).getValue()) {
+            ret.add((TypeMirror) value.getValue());
+        }
+        return ret;
+    }
+
+    private AnnotationValue value(ExecutableElement method, String name) {
+        for(AnnotationMirror mirror : method.getAnnotationMirrors()) {
+            if(!((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(ANNOTATION)) continue;
+            for(Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : elements.getElementValuesWithDefaults(mirror).entrySet()) {
+                if(entry.getKey().getSimpleName().contentEquals(name)) return entry.getValue();
+            }
+        }
+        throw new IllegalStateException("missing " + name + " on " + method);
+    }
+
+    // Keeps the dispatchers registered by earlier compilations into the same output
+    private void writeServices() {
+        Set<String> services = new LinkedHashSet<>();
+        try {
+            FileObject existing = filer.getResource(StandardLocation.CLASS_OUTPUT, "", SERVICE);
+            try (BufferedReader reader = new BufferedReader(existing.openReader(true))) {
+                String line;
+                while((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if(!line.isEmpty() && !line.startsWith("#")) services.add(line);
+                }
+            }
+        } catch (IOException ignored) {
+            // nothing was registered yet
+        }
+        services.addAll(generated);
+        try (Writer writer = filer.createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE).openWriter()) {
+            for(String service : services) writer.write(service + "\n");
+        } catch (IOException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "failed to register dispatchers: " + e);
+        }
+    }
+}
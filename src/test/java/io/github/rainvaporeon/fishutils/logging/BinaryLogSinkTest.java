@@ -0,0 +1,104 @@
+package io.github.rainvaporeon.fishutils.logging;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryLogSinkTest {
+
+    private static final int SEGMENT_SIZE = 64 * 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testDecodingSkipsTornRecords() throws IOException {
+        try(BinaryLogSink sink = BinaryLogSink.open(directory, "torn", SEGMENT_SIZE)) {
+            Logger logger = new Logger("t");
+            logger.setBinarySink(sink);
+            logger.info("before");
+            logger.info("reserved");
+            logger.info("writing");
+            logger.info("after");
+            sink.flush();
+        }
+        Path segment = BinaryLogSink.segments(directory, "torn").get(0);
+        try(FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            // reserved by a writer that stalled before writing anything
+            int reserved = find(buffer, "reserved") - BinaryLogSink.LOG_HEADER;
+            int end = reserved + BinaryLogSink.align(buffer.getInt(reserved));
+            for(int pos = reserved; pos < end; pos++) buffer.put(pos, (byte) 0);
+            // still being written, of type 0
+            buffer.putInt(find(buffer, "writing") - BinaryLogSink.LOG_HEADER + 4, 0);
+            buffer.force();
+        }
+        List<String> lines = decode(segment);
+        assertEquals(2, lines.size(), lines.toString());
+        assertTrue(lines.get(0).endsWith("[t] INFO: before"), lines.get(0));
+        assertTrue(lines.get(1).endsWith("[t] INFO: after"), lines.get(1));
+    }
+
+    @Test
+    public void testTruncationKeepsCharacters() throws IOException {
+        // 2 bytes, then 3 bytes per character, longer than a quarter of the segment
+        String message = "ab" + "€".repeat(6000);
+        try(BinaryLogSink sink = BinaryLogSink.open(directory, "long", SEGMENT_SIZE)) {
+            Logger logger = new Logger("t");
+            logger.setBinarySink(sink);
+            logger.info(message);
+        }
+        List<String> lines = decode(BinaryLogSink.segments(directory, "long").get(0));
+        assertEquals(1, lines.size());
+        String decoded = lines.get(0).substring(lines.get(0).indexOf("INFO: ") + 6);
+        assertEquals(message.substring(0, 2 + (SEGMENT_SIZE / 4 - 2) / 3), decoded);
+    }
+
+    @Test
+    public void testSegmentNamesAreNotGlobs() throws IOException {
+        String name = "app[1]{a,b}*";
+        try(BinaryLogSink sink = BinaryLogSink.open(directory, name, SEGMENT_SIZE)) {
+            Logger logger = new Logger("t");
+            logger.setBinarySink(sink);
+            logger.info("found");
+        }
+        try(BinaryLogSink sink = BinaryLogSink.open(directory, "app1a", SEGMENT_SIZE)) {
+            assertNotNull(sink);
+        }
+        List<Path> segments = BinaryLogSink.segments(directory, name);
+        assertEquals(1, segments.size());
+        assertEquals(name + "-000001" + BinaryLogSink.EXTENSION, segments.get(0).getFileName().toString());
+        StringBuilder out = new StringBuilder();
+        BinaryLogReader.decode(directory, name, out);
+        assertTrue(out.toString().contains("INFO: found"), out.toString());
+    }
+
+    private static List<String> decode(Path segment) throws IOException {
+        StringBuilder out = new StringBuilder();
+        BinaryLogReader.decode(segment, out);
+        return out.toString().lines().toList();
+    }
+
+    private static int find(MappedByteBuffer buffer, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        outer:
+        for(int pos = 0; pos <= buffer.capacity() - bytes.length; pos++) {
+            for(int i = 0; i < bytes.length; i++) {
+                if(buffer.get(pos + i) != bytes[i]) continue outer;
+            }
+            return pos;
+        }
+        throw new AssertionError("not found: " + text);
+    }
+}
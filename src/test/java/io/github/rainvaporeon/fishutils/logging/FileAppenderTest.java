@@ -0,0 +1,71 @@
+package io.github.rainvaporeon.fishutils.logging;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileAppenderTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testFailedRolloverKeepsRecords() throws Exception {
+        Path file = directory.resolve("app.log");
+        FileAppender appender = new FileAppender(file.toFile());
+        try {
+            appender.setPolicy(RollingPolicy.bySize(16, 1));
+            append(appender, "first record\n");
+            appender.flush().get(5, TimeUnit.SECONDS);
+            // the file cannot be moved aside once it is gone
+            Files.delete(file);
+            append(appender, "second record\n");
+            appender.flush().get(5, TimeUnit.SECONDS);
+            // still writing to the reopened file
+            appender.setPolicy(null);
+            append(appender, "third record\n");
+            appender.flush().get(5, TimeUnit.SECONDS);
+        } finally {
+            appender.close(5000);
+        }
+        assertEquals("second record\nthird record\n", Files.readString(file));
+    }
+
+    @Test
+    public void testOversizedRecordsInOrder() throws Exception {
+        Path file = directory.resolve("large.log");
+        FileAppender appender = new FileAppender(file.toFile());
+        String small = "x".repeat(500);
+        String large = "x".repeat(70 * 1024);
+        int count = 0;
+        try {
+            // fills the buffers, so that one is being written when the large record is appended
+            for(int i = 0; i < 50; i++) {
+                for(int j = 0; j < 200; j++) append(appender, count++ + " " + small + "\n");
+                append(appender, count++ + " " + large + "\n");
+            }
+            appender.flush().get(5, TimeUnit.SECONDS);
+        } finally {
+            appender.close(5000);
+        }
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(count, lines.size());
+        for(int i = 0; i < count; i++) {
+            String line = lines.get(i);
+            int end = line.indexOf(' ');
+            assertEquals(i, Integer.parseInt(end < 0 ? line : line.substring(0, end)), "record out of order");
+        }
+    }
+
+    private static void append(FileAppender appender, String record) {
+        byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+        appender.append(bytes, 0, bytes.length, false);
+    }
+}
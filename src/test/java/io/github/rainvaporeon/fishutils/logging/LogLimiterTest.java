@@ -0,0 +1,86 @@
+package io.github.rainvaporeon.fishutils.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogLimiterTest {
+
+    @Test
+    public void testBurstThenSuppressed() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Logger logger = logger(out);
+        logger.setLimit(Logger.Severity.INFO, LogLimit.perSecond(LogLimit.MIN_PERMITS_PER_SECOND, 5));
+        for(int i = 0; i < 100; i++) logger.info("limited");
+        logger.warn("other severity");
+        assertEquals(5, count(out, "limited"));
+        assertEquals(1, count(out, "other severity"));
+    }
+
+    @Test
+    public void testLargeBurstDoesNotOverflow() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Logger logger = logger(out);
+        logger.setLimit(Logger.Severity.INFO, LogLimit.perSecond(LogLimit.MIN_PERMITS_PER_SECOND, Integer.MAX_VALUE));
+        for(int i = 0; i < 1000; i++) logger.info("limited");
+        assertEquals(1000, count(out, "limited"));
+    }
+
+    @Test
+    public void testCallSitesLimitedSeparately() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Logger logger = logger(out);
+        logger.setCallSiteLimit(Logger.Severity.INFO, LogLimit.perSecond(LogLimit.MIN_PERMITS_PER_SECOND, 3));
+        for(int i = 0; i < 10; i++) {
+            logger.info("first");
+            logger.info("second");
+        }
+        assertEquals(3, count(out, "first"));
+        assertEquals(3, count(out, "second"));
+    }
+
+    @Test
+    public void testRatesOutOfRangeRejected() {
+        assertThrows(IllegalArgumentException.class, () -> LogLimit.perSecond(2e9, 1));
+        assertThrows(IllegalArgumentException.class, () -> LogLimit.perSecond(1e-9, 1));
+        assertThrows(IllegalArgumentException.class, () -> LogLimit.perSecond(Double.NaN, 1));
+        assertThrows(IllegalArgumentException.class, () -> LogLimit.perSecond(-1, 1));
+        assertThrows(IllegalArgumentException.class, () -> LogLimit.perSecond(1, 0));
+        assertThrows(IllegalArgumentException.class, () -> LogLimit.sampled(0));
+        assertEquals(0, LogLimit.sampled(0.5).getPermitsPerSecond());
+        assertEquals(LogLimit.MAX_PERMITS_PER_SECOND, LogLimit.perSecond(LogLimit.MAX_PERMITS_PER_SECOND, 1).getPermitsPerSecond());
+    }
+
+    @Test
+    public void testSummaryLoggedEachInterval() throws InterruptedException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Logger logger = logger(out);
+        Loggers.setSuppressionSummaryInterval(Duration.ofMillis(50));
+        try {
+            logger.setLimit(Logger.Severity.INFO, LogLimit.perSecond(LogLimit.MIN_PERMITS_PER_SECOND, 1));
+            for(int i = 0; i < 10; i++) logger.info("limited");
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+            while(count(out, "Suppressed 9 INFO messages") == 0 && System.nanoTime() < deadline) Thread.sleep(10);
+            assertEquals(1, count(out, "Suppressed 9 INFO messages"));
+        } finally {
+            Loggers.setSuppressionSummaryInterval(Duration.ofSeconds(10));
+        }
+        assertThrows(IllegalArgumentException.class, () -> Loggers.setSuppressionSummaryInterval(Duration.ZERO));
+    }
+
+    private static Logger logger(ByteArrayOutputStream out) {
+        Logger logger = new Logger("limits");
+        logger.setAllOutputStream(new PrintStream(out, true, StandardCharsets.UTF_8));
+        return logger;
+    }
+
+    private static long count(ByteArrayOutputStream out, String message) {
+        return out.toString(StandardCharsets.UTF_8).lines().filter(line -> line.contains(message)).count();
+    }
+}
@@ -0,0 +1,49 @@
+package io.github.rainvaporeon.fishutils.logging;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoggersTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testNamedLoggersConfiguredSeparately() {
+        ByteArrayOutputStream first = new ByteArrayOutputStream(), second = new ByteArrayOutputStream();
+        Logger a = Loggers.getLogger("shared", null), b = Loggers.getLogger("shared", null);
+        assertNotSame(a, b);
+        a.setAllOutputStream(new PrintStream(first, true, StandardCharsets.UTF_8));
+        b.setAllOutputStream(new PrintStream(second, true, StandardCharsets.UTF_8));
+        b.setMinimumSeverity(Logger.Severity.ERROR);
+        a.info("from a");
+        b.info("from b");
+        assertTrue(first.toString(StandardCharsets.UTF_8).contains("from a"));
+        assertEquals("", second.toString(StandardCharsets.UTF_8));
+        assertEquals(Logger.Severity.DEBUG, a.getMinimumSeverity());
+    }
+
+    @Test
+    public void testClosingNamedLoggerKeepsFileOpenForOthers() throws Exception {
+        Path file = directory.resolve("shared.log");
+        Logger a = Loggers.getLogger("file", file.toFile()), b = Loggers.getLogger("file", file.toFile());
+        a.setAllOutputStream(null);
+        b.setAllOutputStream(null);
+        a.info("before close");
+        a.close();
+        b.info("after close");
+        b.flush();
+        String content = Files.readString(file);
+        assertTrue(content.contains("before close"));
+        assertTrue(content.contains("after close"));
+        b.close();
+    }
+}
@@ -0,0 +1,103 @@
+package io.github.rainvaporeon.fishutils.utils.eventbus;
+
+import io.github.rainvaporeon.fishutils.utils.eventbus.events.Event;
+import io.github.rainvaporeon.fishutils.utils.eventbus.events.EventBusSubscriber;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncEventBusTest {
+
+    @Test
+    public void testFutureCoversAsyncBusBelowSyncBus() {
+        AsyncEventBus root = AsyncEventBus.dispatcher(2), grandchild = AsyncEventBus.dispatcher(2);
+        try {
+            EventBus child = new EventBus();
+            Counter counter = new Counter();
+            child.hook(root);
+            grandchild.hook(child);
+            grandchild.subscribe(counter);
+            root.fireAsync(new TestEvent()).join();
+            assertEquals(1, counter.handled.get());
+            root.fireAllAsync(List.of(new TestEvent(), new TestEvent())).join();
+            assertEquals(3, counter.handled.get());
+        } finally {
+            root.shutdown();
+            grandchild.shutdown();
+        }
+    }
+
+    @Test
+    public void testFutureCoversSubscribersAndChildren() {
+        AsyncEventBus root = AsyncEventBus.virtual(), child = AsyncEventBus.virtual();
+        try {
+            Counter first = new Counter(), second = new Counter();
+            root.subscribe(first);
+            child.hook(root);
+            child.subscribe(second);
+            root.fireAsync(new TestEvent()).join();
+            assertEquals(1, first.handled.get());
+            assertEquals(1, second.handled.get());
+        } finally {
+            root.shutdown();
+            child.shutdown();
+        }
+    }
+
+    @Test
+    public void testFutureFailsWithHandlerError() {
+        AsyncEventBus root = AsyncEventBus.dispatcher(1), grandchild = AsyncEventBus.dispatcher(1);
+        try {
+            EventBus child = new EventBus();
+            child.hook(root);
+            grandchild.hook(child);
+            grandchild.subscribe(new Failing());
+            CompletableFuture<Void> future = root.fireAsync(new TestEvent());
+            assertThrows(CompletionException.class, future::join);
+        } finally {
+            root.shutdown();
+            grandchild.shutdown();
+        }
+    }
+
+    @Test
+    public void testDuplicateCompletesImmediately() {
+        AsyncEventBus root = AsyncEventBus.dispatcher(1);
+        try {
+            Counter counter = new Counter();
+            root.subscribe(counter);
+            TestEvent event = new TestEvent();
+            root.fireAsync(event).join();
+            assertTrue(root.fireAsync(event).isDone());
+            assertEquals(1, counter.handled.get());
+        } finally {
+            root.shutdown();
+        }
+    }
+
+    public static class TestEvent extends Event {}
+
+    public static class Counter {
+        private final AtomicInteger handled = new AtomicInteger();
+
+        @EventBusSubscriber
+        public void on(TestEvent event) throws InterruptedException {
+            // finishes well after the publisher would have returned
+            Thread.sleep(50);
+            handled.incrementAndGet();
+        }
+    }
+
+    public static class Failing {
+        @EventBusSubscriber
+        public void on(TestEvent event) throws InterruptedException {
+            Thread.sleep(50);
+            throw new IllegalStateException("failed");
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package io.github.rainvaporeon.fishutils.utils.eventbus;
+
+import io.github.rainvaporeon.fishutils.utils.eventbus.events.Event;
+import io.github.rainvaporeon.fishutils.utils.eventbus.events.EventBusSubscriber;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventBusTest {
+
+    @Test
+    public void testPriorityThenRegistrationOrder() {
+        List<String> received = new CopyOnWriteArrayList<>();
+        EventBus bus = new EventBus();
+        Prioritized a = new Prioritized("a", received), b = new Prioritized("b", received);
+        Recorder c = new Recorder("c", received);
+        bus.subscribe(a);
+        bus.subscribe(c);
+        bus.subscribe(b);
+        bus.fire(new TestEvent());
+        assertEquals(List.of("a-high", "b-high", "a", "c", "b", "a-low", "b-low"), received);
+
+        // patched into the resolved deliveries, after every earlier registration
+        bus.unsubscribe(a);
+        bus.subscribe(a);
+        received.clear();
+        bus.fire(new TestEvent());
+        assertEquals(List.of("b-high", "a-high", "c", "b", "a", "b-low", "a-low"), received);
+
+        bus.unsubscribe(b);
+        received.clear();
+        bus.fire(new TestEvent());
+        assertEquals(List.of("a-high", "c", "a", "a-low"), received);
+
+        bus.invalidate();
+        received.clear();
+        bus.fire(new TestEvent());
+        assertEquals(List.of("a-high", "c", "a", "a-low"), received);
+    }
+
+    @Test
+    public void testUnsubscribeRemovesEldestRegistration() {
+        List<String> received = new CopyOnWriteArrayList<>();
+        EventBus bus = new EventBus();
+        Recorder a = new Recorder("a", received), b = new Recorder("b", received);
+        bus.subscribe(a);
+        bus.subscribe(b);
+        bus.subscribe(a);
+        bus.fire(new TestEvent());
+        assertEquals(List.of("a", "b", "a"), received);
+        bus.unsubscribe(a);
+        received.clear();
+        bus.fire(new TestEvent());
+        assertEquals(List.of("b", "a"), received);
+    }
+
+    @Test
+    public void testDuplicatesDroppedAcrossSignatureBlocks() {
+        List<String> received = new CopyOnWriteArrayList<>();
+        Recorder recorder = new Recorder("bus", received);
+        // spans several blocks of overflow signatures
+        List<EventBus> buses = new ArrayList<>();
+        for(int i = 0; i < 5000; i++) buses.add(new EventBus());
+        for(EventBus bus : buses) bus.subscribe(recorder);
+        TestEvent event = new TestEvent();
+        // signed out of order, so that blocks are inserted before existing ones
+        for(int i = buses.size() - 1; i >= 0; i -= 7) buses.get(i).fire(event);
+        for(int i = buses.size() - 1; i >= 0; i -= 7) buses.get(i).fire(event);
+        assertEquals((buses.size() + 6) / 7, received.size());
+        received.clear();
+        for(EventBus bus : buses) bus.fire(event);
+        assertEquals(buses.size() - (buses.size() + 6) / 7, received.size());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testSubscriberListView() {
+        List<String> received = new CopyOnWriteArrayList<>();
+        ListBus bus = new ListBus();
+        Recorder first = new Recorder("first", received), second = new Recorder("second", received);
+        bus.subscribe(first);
+        assertTrue(bus.subscribers().add(second));
+        assertEquals(List.of(first, second), List.copyOf(bus.subscribers()));
+        assertEquals(second, bus.subscribers().get(1));
+        bus.fire(new TestEvent());
+        assertEquals(List.of("first", "second"), received);
+
+        assertTrue(bus.subscribers().remove(first));
+        assertFalse(bus.subscribers().remove(first));
+        received.clear();
+        bus.fire(new TestEvent());
+        assertEquals(List.of("second"), received);
+
+        bus.subscribers().clear();
+        assertTrue(bus.subscribers().isEmpty());
+        received.clear();
+        bus.fire(new TestEvent());
+        assertEquals(List.of(), received);
+    }
+
+    public static class TestEvent extends Event {}
+
+    public static class Recorder {
+        private final String name;
+        private final List<String> received;
+
+        public Recorder(String name, List<String> received) {
+            this.name = name;
+            this.received = received;
+        }
+
+        @EventBusSubscriber
+        public void on(TestEvent event) {
+            received.add(name);
+        }
+    }
+
+    public static class Prioritized {
+        private final String name;
+        private final List<String> received;
+
+        public Prioritized(String name, List<String> received) {
+            this.name = name;
+            this.received = received;
+        }
+
+        @EventBusSubscriber(priority = EventBusSubscriber.Priority.LOW)
+        public void low(TestEvent event) {
+            received.add(name + "-low");
+        }
+
+        @EventBusSubscriber
+        public void normal(TestEvent event) {
+            received.add(name);
+        }
+
+        @EventBusSubscriber(priority = EventBusSubscriber.Priority.HIGH)
+        public void high(TestEvent event) {
+            received.add(name + "-high");
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static class ListBus extends EventBus {
+        private List<Object> subscribers() {
+            return subscribers;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package io.github.rainvaporeon.fishutils.utils.eventbus;
+
+import io.github.rainvaporeon.fishutils.utils.eventbus.events.Event;
+import io.github.rainvaporeon.fishutils.utils.eventbus.events.EventBusSubscriber;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PropagationPlanTest {
+
+    @Test
+    public void testDiamondReachedThroughSecondParent() {
+        List<String> received = new CopyOnWriteArrayList<>();
+        EventBus root = bus("root", received), first = bus("first", received), second = bus("second", received);
+        first.hook(root);
+        second.hook(root);
+        TestEvent event = new TestEvent();
+        // the first parent sees the event before the shared child is hooked
+        first.fire(event);
+        EventBus shared = bus("shared", received);
+        shared.hook(first);
+        shared.hook(second);
+        received.clear();
+        root.fire(event);
+        assertEquals(List.of("root", "second", "shared"), received);
+    }
+
+    @Test
+    public void testDiamondDeliveredOnce() {
+        List<String> received = new CopyOnWriteArrayList<>();
+        EventBus root = bus("root", received), first = bus("first", received), second = bus("second", received);
+        EventBus shared = bus("shared", received);
+        first.hook(root);
+        second.hook(root);
+        shared.hook(first);
+        shared.hook(second);
+        root.fire(new TestEvent());
+        assertEquals(List.of("root", "first", "shared", "second"), received);
+        received.clear();
+        root.fireAll(List.of(new TestEvent(), new TestEvent()));
+        assertEquals(2, received.stream().filter("shared"::equals).count());
+    }
+
+    @Test
+    public void testDiamondDeliveredPerPathWithDuplicates() {
+        List<String> received = new CopyOnWriteArrayList<>();
+        EventBus root = bus("root", received), first = bus("first", received), second = bus("second", received);
+        EventBus shared = new EventBus(true);
+        shared.subscribe(new Recorder("shared", received));
+        first.hook(root);
+        second.hook(root);
+        shared.hook(first);
+        shared.hook(second);
+        root.fire(new TestEvent());
+        assertEquals(List.of("root", "first", "shared", "second", "shared"), received);
+    }
+
+    @Test
+    public void testCancellableDiamondReachedThroughSecondParent() {
+        List<String> received = new CopyOnWriteArrayList<>();
+        CancellableEventBus root = new CancellableEventBus();
+        EventBus first = bus("first", received), second = bus("second", received);
+        first.hook(root);
+        second.hook(root);
+        TestEvent event = new TestEvent();
+        first.fire(event);
+        EventBus shared = bus("shared", received);
+        shared.hook(first);
+        shared.hook(second);
+        received.clear();
+        assertFalse(root.fireCancellable(event));
+        assertEquals(List.of("second", "shared"), received);
+    }
+
+    @Test
+    public void testHookRejectsCycles() {
+        EventBus a = new EventBus(), b = new EventBus(), c = new EventBus();
+        b.hook(a);
+        c.hook(b);
+        assertThrows(IllegalStateException.class, () -> a.hook(c));
+        assertThrows(IllegalStateException.class, () -> a.hook(a));
+    }
+
+    private static EventBus bus(String name, List<String> received) {
+        EventBus bus = new EventBus();
+        bus.subscribe(new Recorder(name, received));
+        return bus;
+    }
+
+    public static class TestEvent extends Event {}
+
+    public static class Recorder {
+        private final String name;
+        private final List<String> received;
+
+        public Recorder(String name, List<String> received) {
+            this.name = name;
+            this.received = received;
+        }
+
+        @EventBusSubscriber
+        public void on(TestEvent event) {
+            received.add(name);
+        }
+    }
+}
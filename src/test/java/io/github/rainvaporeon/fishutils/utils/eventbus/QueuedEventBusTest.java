@@ -0,0 +1,115 @@
+package io.github.rainvaporeon.fishutils.utils.eventbus;
+
+import io.github.rainvaporeon.fishutils.utils.eventbus.events.Event;
+import io.github.rainvaporeon.fishutils.utils.eventbus.events.EventBusSubscriber;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueuedEventBusTest {
+
+    @Test
+    public void testBlockWaitsForSpace() throws InterruptedException {
+        QueuedEventBus bus = new QueuedEventBus(2, QueuedEventBus.Backpressure.BLOCK);
+        Gate gate = fill(bus);
+        Thread poster = new Thread(() -> bus.post(new NumberedEvent(3)));
+        poster.start();
+        poster.join(200);
+        assertTrue(poster.isAlive());
+        gate.release.countDown();
+        poster.join(5000);
+        assertFalse(poster.isAlive());
+        drain(bus);
+        assertEquals(List.of(0, 1, 2, 3), gate.received);
+    }
+
+    @Test
+    public void testDropOldestDiscardsQueuedEvent() throws InterruptedException {
+        QueuedEventBus bus = new QueuedEventBus(2, QueuedEventBus.Backpressure.DROP_OLDEST);
+        Gate gate = fill(bus);
+        assertTrue(bus.post(new NumberedEvent(3)));
+        assertEquals(1, bus.getDroppedOldestCount());
+        gate.release.countDown();
+        drain(bus);
+        assertEquals(List.of(0, 2, 3), gate.received);
+    }
+
+    @Test
+    public void testDropNewestDiscardsPostedEvent() throws InterruptedException {
+        QueuedEventBus bus = new QueuedEventBus(2, QueuedEventBus.Backpressure.DROP_NEWEST);
+        Gate gate = fill(bus);
+        assertFalse(bus.post(new NumberedEvent(3)));
+        assertEquals(1, bus.getDroppedNewestCount());
+        gate.release.countDown();
+        drain(bus);
+        assertEquals(List.of(0, 1, 2), gate.received);
+        assertEquals(4, bus.getPostedCount());
+        assertEquals(3, bus.getDrainedCount());
+    }
+
+    @Test
+    public void testCallerRunsFiresOnPostingThread() throws InterruptedException {
+        QueuedEventBus bus = new QueuedEventBus(2, QueuedEventBus.Backpressure.CALLER_RUNS);
+        Gate gate = fill(bus);
+        assertTrue(bus.post(new NumberedEvent(3)));
+        assertEquals(1, bus.getCallerRunsCount());
+        assertEquals(List.of(0, 3), gate.received);
+        assertEquals(Thread.currentThread(), gate.threads.get(1));
+        gate.release.countDown();
+        drain(bus);
+        assertEquals(List.of(0, 3, 1, 2), gate.received);
+    }
+
+    @Test
+    public void testPostAfterShutdownRejected() throws InterruptedException {
+        QueuedEventBus bus = new QueuedEventBus(2, QueuedEventBus.Backpressure.BLOCK);
+        drain(bus);
+        assertThrows(IllegalStateException.class, () -> bus.post(new NumberedEvent(0)));
+    }
+
+    // blocks the only consumer on the first event, then fills the queue
+    private static Gate fill(QueuedEventBus bus) throws InterruptedException {
+        Gate gate = new Gate();
+        bus.subscribe(gate);
+        assertTrue(bus.post(new NumberedEvent(0)));
+        assertTrue(gate.entered.await(5, TimeUnit.SECONDS));
+        assertTrue(bus.post(new NumberedEvent(1)));
+        assertTrue(bus.post(new NumberedEvent(2)));
+        assertEquals(bus.getCapacity(), bus.getQueueDepth());
+        return gate;
+    }
+
+    private static void drain(QueuedEventBus bus) throws InterruptedException {
+        bus.shutdown();
+        assertTrue(bus.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    public static class NumberedEvent extends Event {
+        private final int number;
+
+        public NumberedEvent(int number) {
+            this.number = number;
+        }
+    }
+
+    public static class Gate {
+        private final List<Integer> received = new CopyOnWriteArrayList<>();
+        private final List<Thread> threads = new CopyOnWriteArrayList<>();
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @EventBusSubscriber
+        public void on(NumberedEvent event) throws InterruptedException {
+            received.add(event.number);
+            threads.add(Thread.currentThread());
+            if(event.number != 0) return;
+            entered.countDown();
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package io.github.rainvaporeon.fishutils.utils.eventbus;
+
+import io.github.rainvaporeon.fishutils.utils.eventbus.events.Event;
+import io.github.rainvaporeon.fishutils.utils.eventbus.events.EventBusSubscriber;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedEventBusTest {
+
+    @Test
+    public void testEqualKeysDeliveredInOrder() throws InterruptedException {
+        ShardedEventBus bus = new ShardedEventBus(4, event -> ((KeyedEvent) event).key);
+        Recorder recorder = new Recorder();
+        bus.subscribe(recorder);
+        for(int i = 0; i < 100; i++) bus.fire(new KeyedEvent(i % 3, i));
+        bus.shutdown();
+        assertTrue(bus.awaitTermination(5, TimeUnit.SECONDS));
+        for(int key = 0; key < 3; key++) {
+            int previous = -1;
+            for(KeyedEvent event : recorder.received) {
+                if(event.key != key) continue;
+                assertTrue(event.value > previous);
+                previous = event.value;
+            }
+        }
+        assertEquals(100, recorder.received.size());
+    }
+
+    @Test
+    public void testEventRefiredAfterPartitionerFailed() {
+        AtomicBoolean fail = new AtomicBoolean(true);
+        ShardedEventBus bus = new ShardedEventBus(2, event -> {
+            if(fail.get()) throw new IllegalStateException("no key");
+            return ((KeyedEvent) event).key;
+        });
+        try {
+            Recorder recorder = new Recorder();
+            bus.subscribe(recorder);
+            KeyedEvent event = new KeyedEvent(1, 1);
+            assertThrows(IllegalStateException.class, () -> bus.fireAsync(event));
+            assertThrows(IllegalStateException.class, () -> bus.fireAllAsync(List.of(event)));
+            fail.set(false);
+            bus.fireAsync(event).join();
+            assertEquals(List.of(event), recorder.received);
+        } finally {
+            bus.shutdown();
+        }
+    }
+
+    @Test
+    public void testRejectedEventNotMarkedAsReceived() {
+        ShardedEventBus bus = new ShardedEventBus(1, event -> null);
+        KeyedEvent event = new KeyedEvent(0, 0);
+        bus.shutdown();
+        assertThrows(RejectedExecutionException.class, () -> bus.fireAsync(event));
+        assertThrows(RejectedExecutionException.class, () -> bus.fireAllAsync(List.of(event)));
+        assertFalse(Secret.getAccessor().signed(event, bus.signature));
+    }
+
+    public static class KeyedEvent extends Event {
+        private final int key;
+        private final int value;
+
+        public KeyedEvent(int key, int value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    public static class Recorder {
+        private final List<KeyedEvent> received = new ArrayList<>();
+
+        @EventBusSubscriber
+        public synchronized void on(KeyedEvent event) {
+            received.add(event);
+        }
+    }
+}